@@ -0,0 +1,138 @@
+package osp.Memory;
+
+import osp.Tasks.*;
+import osp.Hardware.*;
+import osp.Utilities.*;
+
+/**
+ * The AdaptivePolicy class picks the page replacement policy at run time when
+ * OSP is started with -userOption Adaptive. Each candidate policy (the Fifo()
+ * and SecondChance() victim selectors of the PageFaultHandler) is shadowed by
+ * a ReplacementModel that sees a hash-sampled subset of the references made
+ * through MMU.do_refer(). As in MissRatioCurve, a page is sampled when the hash
+ * of its key falls below a threshold, and each shadow frame table is scaled
+ * down by the sampling rate, so the shadows stay small at any frame count.
+ *
+ * Every Window sampled references the shadows' miss rates over the window are
+ * compared. The live policy is switched when another candidate's rate is
+ * lower by at least MinGain (absolute) and by at least RelativeGain of the
+ * current rate. Every switch is printed with the rates behind it.
+ *
+ * Controlled with system properties:
+ * -Dosp.memory.adaptiveWindow=n (sampled references per decision, default 200)
+ * -Dosp.memory.adaptiveFrames=n (shadow frames before scaling down, default 256)
+ *
+ * @OSPProject Memory
+ */
+public class AdaptivePolicy {
+	// Candidate policies, named as for userOption and ReplacementModel
+	static final String[] Candidates = { "SecondChance", "Fifo" };
+
+	// How much better another policy must be to switch to it
+	static final double MinGain = 0.02;
+	static final double RelativeGain = 0.10;
+
+	// Whether -userOption Adaptive is in effect, and the live policy
+	static boolean enabled;
+	static String current;
+
+	// Sampling threshold on MissRatioCurve.hash() and sampled references per
+	// decision
+	static long threshold;
+	static int window;
+
+	// One shadow per candidate, and each shadow's fault count at the start of the
+	// window
+	static ReplacementModel[] shadows;
+	static long[] windowStartFaults;
+	static int windowReferences;
+
+	// Number of switches so far
+	static int numSwitches;
+
+	/*
+	 * Called from MMU.init() once the frame table is built.
+	 */
+	public static void init() {
+		enabled = "Adaptive".equals(GlobalVariables.userOption);
+		current = Candidates[0];
+		numSwitches = 0;
+		if (!enabled)
+			return;
+
+		window = Integer.getInteger("osp.memory.adaptiveWindow", 200);
+
+		// Full shadows up to adaptiveFrames frames, sampled beyond that
+		int frames = MMU.getFrameTableSize();
+		int maxShadowFrames = Integer.getInteger("osp.memory.adaptiveFrames", 256);
+		double rate = Math.min(1.0, (double) maxShadowFrames / frames);
+		threshold = Math.max(1L, (long) (rate * MissRatioCurve.Modulus));
+		int shadowFrames = Math.max(1, (int) Math.round(frames * rate));
+
+		shadows = new ReplacementModel[Candidates.length];
+		windowStartFaults = new long[Candidates.length];
+		for (int i = 0; i < Candidates.length; i++)
+			shadows[i] = new ReplacementModel(Candidates[i], shadowFrames);
+		windowReferences = 0;
+
+		System.out.println("Adaptive: starting with " + current + ", shadowing " + Candidates.length
+				+ " policies on " + shadowFrames + " frames at sampling rate " + String.format("%.3f", rate));
+	}
+
+	/*
+	 * Called from MMU.do_refer() for every reference. Unsampled references cost
+	 * one hash and one comparison.
+	 */
+	public static void record(TaskCB task, int pageNum, boolean write) {
+		if (!enabled)
+			return;
+
+		long key = MissRatioCurve.key(task.getID(), pageNum);
+		if (MissRatioCurve.hash(key) >= threshold)
+			return;
+
+		for (int i = 0; i < shadows.length; i++)
+			shadows[i].access(key, write);
+
+		if (++windowReferences >= window)
+			decide();
+	}
+
+	// Compares the shadows' miss rates over the window and switches the live
+	// policy if another candidate is clearly better
+	static void decide() {
+		int best = -1;
+		int live = -1;
+		double[] rates = new double[shadows.length];
+		for (int i = 0; i < shadows.length; i++) {
+			rates[i] = (double) (shadows[i].faults - windowStartFaults[i]) / windowReferences;
+			windowStartFaults[i] = shadows[i].faults;
+
+			if (best < 0 || rates[i] < rates[best])
+				best = i;
+			if (Candidates[i].equals(current))
+				live = i;
+		}
+
+		double gain = rates[live] - rates[best];
+		if (best != live && gain >= MinGain && gain >= RelativeGain * rates[live]) {
+			numSwitches++;
+			System.out.println("Adaptive: switching from " + current + " to " + Candidates[best] + " at time "
+					+ HClock.get() + ": shadow miss rate " + String.format("%.3f", rates[best]) + " vs "
+					+ String.format("%.3f", rates[live]) + " over the last " + windowReferences
+					+ " sampled references");
+			current = Candidates[best];
+		}
+		windowReferences = 0;
+	}
+
+	/*
+	 * Returns the policy the fault handler should use: the adaptive choice under
+	 * -userOption Adaptive, Fifo under -userOption Fifo, SecondChance otherwise.
+	 */
+	public static String policy() {
+		if (enabled)
+			return current;
+		return "Fifo".equals(GlobalVariables.userOption) ? "Fifo" : "SecondChance";
+	}
+}
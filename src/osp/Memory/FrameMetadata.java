@@ -0,0 +1,398 @@
+package osp.Memory;
+
+import osp.Tasks.*;
+
+/**
+ * The FrameMetadata class keeps a packed copy of the frame table state in
+ * primitive arrays: one bitset per flag (referenced, dirty, reserved, locked,
+ * occupied, and holding a page advised DontNeed or Free), plus the lock count,
+ * the ID of the task owning the page, the ID of the task the frame is reserved
+ * for and the load order of the page in each frame. Replacement scans and free
+ * frame searches read these columns instead of chasing FrameTableEntry
+ * objects, and whole words of 64 frames are tested at once.
+ *
+ * The columns stay in sync because every change to a frame made by the Memory
+ * package goes through the setters below, which update the FrameTableEntry
+ * first and the columns second. The disk interrupt handler in OSP.jar also
+ * updates frames when an I/O completes (referenced and dirty bits after file
+ * I/O, clean after a swap-out, unreserve for a dead task); those frames are
+ * marked stale when they are unlocked or swapped, and sync() re-reads them
+ * before the next scan. A swap whose thread was killed may still be in flight
+ * when the fault handler returns; its frame is kept as an orphan and re-read by
+ * every sync() until it is neither locked (the I/O has completed) nor reserved.
+ *
+ * OSP calls into the Memory package from several Java threads, so every
+ * method that changes the columns or scans several of them holds the class
+ * lock.
+ *
+ * @OSPProject Memory
+ */
+public class FrameMetadata {
+	// Flag columns, one bit per frame
+	static long[] referenced;
+	static long[] dirty;
+	static long[] reserved;
+	static long[] locked;
+	static long[] occupied;
+
+	// Frames holding a page advised DontNeed or Free (see PageTable.advise())
+	static long[] dontNeed;
+
+	// Lock count, owner task ID (-1 when the frame holds no page) and ID of the
+	// task the frame is reserved for (-1 when unreserved) per frame
+	static int[] lockCount;
+	static int[] owner;
+	static int[] reservedBy;
+
+	// PageFaultHandler.loadCount when the page in the frame was swapped in
+	static long[] loadOrder;
+
+	// Number of frames and number of frames that numFreeFrames() counts as free
+	static int size;
+	static int freeCount;
+
+	// Frames whose I/O may have changed them behind our back, waiting for sync()
+	static long[] stale;
+	static int[] staleList;
+	static int staleCount;
+
+	// Frames with the I/O of a killed thread possibly in flight, re-read by every
+	// sync() until they are unlocked and unreserved
+	static long[] orphan;
+	static int[] orphanList;
+	static int orphanCount;
+
+	/*
+	 * Called from MMU.init() once the frame table is populated. Builds the columns
+	 * from the FrameTableEntry objects.
+	 */
+	public static synchronized void init() {
+		size = MMU.getFrameTableSize();
+		int words = (size + 63) >>> 6;
+
+		referenced = new long[words];
+		dirty = new long[words];
+		reserved = new long[words];
+		locked = new long[words];
+		occupied = new long[words];
+		dontNeed = new long[words];
+		lockCount = new int[size];
+		owner = new int[size];
+		reservedBy = new int[size];
+		loadOrder = new long[size];
+		stale = new long[words];
+		staleList = new int[size];
+		staleCount = 0;
+		orphan = new long[words];
+		orphanList = new int[size];
+		orphanCount = 0;
+
+		freeCount = size;
+		for (int i = 0; i < size; i++) {
+			owner[i] = -1;
+			reservedBy[i] = -1;
+			refresh(i);
+		}
+	}
+
+	// Bitset helpers
+	static boolean get(long[] bits, int i) {
+		return (bits[i >>> 6] & (1L << i)) != 0;
+	}
+
+	static void set(long[] bits, int i, boolean value) {
+		if (value)
+			bits[i >>> 6] |= 1L << i;
+		else
+			bits[i >>> 6] &= ~(1L << i);
+	}
+
+	// Free in the sense of numFreeFrames(): no page, unreserved, unlocked, clean
+	// and not referenced
+	static boolean isFree(int i) {
+		long bit = 1L << i;
+		int w = i >>> 6;
+		return ((occupied[w] | reserved[w] | locked[w] | referenced[w] | dirty[w]) & bit) == 0;
+	}
+
+	/*
+	 * Re-reads every column of frame i from its FrameTableEntry and keeps the free
+	 * frame count current.
+	 */
+	static synchronized void refresh(int i) {
+		FrameTableEntry frame = MMU.getFrame(i);
+		boolean wasFree = isFree(i);
+
+		set(referenced, i, frame.isReferenced());
+		set(dirty, i, frame.isDirty());
+		set(reserved, i, frame.isReserved());
+		set(locked, i, frame.getLockCount() > 0);
+		set(occupied, i, frame.getPage() != null);
+		lockCount[i] = frame.getLockCount();
+		owner[i] = frame.getPage() != null ? frame.getPage().getTask().getID() : -1;
+		reservedBy[i] = frame.getReserved() != null ? frame.getReserved().getID() : -1;
+		set(dontNeed, i, frame.getPage() != null && frame.getPage().getTask().getPageTable() != null
+				&& frame.getPage().getTask().getPageTable().isDontNeedPage(frame.getPage().getID()));
+
+		adjustFree(i, wasFree);
+	}
+
+	// Updates freeCount after frame i changed, given whether it used to be free
+	static void adjustFree(int i, boolean wasFree) {
+		boolean nowFree = isFree(i);
+		if (wasFree && !nowFree)
+			freeCount--;
+		else if (!wasFree && nowFree)
+			freeCount++;
+	}
+
+	/*
+	 * Marks frame i to be re-read by the next sync(). Used for frames with I/O in
+	 * flight, which OSP updates when the I/O completes.
+	 */
+	public static synchronized void markStale(FrameTableEntry frame) {
+		int i = frame.getID();
+		if (!get(stale, i)) {
+			set(stale, i, true);
+			staleList[staleCount++] = i;
+		}
+	}
+
+	/*
+	 * Marks frame i as an orphan: its swap was started by a thread that has been
+	 * killed, and OSP will still update it when the I/O completes.
+	 */
+	public static synchronized void markOrphan(FrameTableEntry frame) {
+		int i = frame.getID();
+		if (!get(orphan, i)) {
+			set(orphan, i, true);
+			orphanList[orphanCount++] = i;
+		}
+	}
+
+	/*
+	 * Re-reads all stale frames and all orphans, and lets go of the orphans that
+	 * are no longer locked or reserved. Called before the frame table is scanned.
+	 */
+	public static synchronized void sync() {
+		while (staleCount > 0) {
+			int i = staleList[--staleCount];
+			set(stale, i, false);
+			refresh(i);
+		}
+
+		for (int k = 0; k < orphanCount;) {
+			int i = orphanList[k];
+			refresh(i);
+			if (isReserved(i) || isLocked(i)) {
+				k++;
+			} else {
+				set(orphan, i, false);
+				orphanList[k] = orphanList[--orphanCount];
+			}
+		}
+	}
+
+	// Write-through setters: update the frame, then its columns
+
+	public static synchronized void setReferenced(FrameTableEntry frame, boolean flag) {
+		int i = frame.getID();
+		boolean wasFree = isFree(i);
+		frame.setReferenced(flag);
+		set(referenced, i, flag);
+		adjustFree(i, wasFree);
+	}
+
+	public static synchronized void setDirty(FrameTableEntry frame, boolean flag) {
+		int i = frame.getID();
+		boolean wasFree = isFree(i);
+		frame.setDirty(flag);
+		set(dirty, i, flag);
+		adjustFree(i, wasFree);
+	}
+
+	public static synchronized void setReserved(FrameTableEntry frame, TaskCB task) {
+		frame.setReserved(task);
+		refresh(frame.getID());
+	}
+
+	public static synchronized void setUnreserved(FrameTableEntry frame, TaskCB task) {
+		frame.setUnreserved(task);
+		refresh(frame.getID());
+	}
+
+	public static synchronized void setPage(FrameTableEntry frame, PageTableEntry page) {
+		frame.setPage(page);
+		refresh(frame.getID());
+	}
+
+	public static synchronized void incrementLockCount(FrameTableEntry frame) {
+		frame.incrementLockCount();
+		refresh(frame.getID());
+	}
+
+	public static synchronized void decrementLockCount(FrameTableEntry frame) {
+		frame.decrementLockCount();
+		refresh(frame.getID());
+
+		// Unlocking happens as the I/O completes, just before OSP updates the
+		// frame's referenced and dirty bits
+		markStale(frame);
+	}
+
+	// Updates the DontNeed column after the hint of the page in the frame changed
+	public static synchronized void setDontNeed(FrameTableEntry frame, boolean flag) {
+		set(dontNeed, frame.getID(), flag);
+	}
+
+	// Records the load order of the page just swapped into the frame
+	public static synchronized void setLoadOrder(FrameTableEntry frame, long order) {
+		loadOrder[frame.getID()] = order;
+	}
+
+	/*
+	 * Clears the referenced bits of the frames of word w given in bits, as one
+	 * step of the clock.
+	 */
+	public static synchronized void clearReferenced(int w, long bits) {
+		for (long left = bits & referenced[w]; left != 0; left &= left - 1) {
+			int i = (w << 6) + Long.numberOfTrailingZeros(left);
+			boolean wasFree = isFree(i);
+			MMU.getFrame(i).setReferenced(false);
+			set(referenced, i, false);
+			adjustFree(i, wasFree);
+		}
+	}
+
+	// Column readers
+
+	public static boolean isReferenced(int i) {
+		return get(referenced, i);
+	}
+
+	public static boolean isDirty(int i) {
+		return get(dirty, i);
+	}
+
+	public static boolean isReserved(int i) {
+		return get(reserved, i);
+	}
+
+	public static boolean isLocked(int i) {
+		return get(locked, i);
+	}
+
+	public static boolean isOccupied(int i) {
+		return get(occupied, i);
+	}
+
+	public static int getLockCount(int i) {
+		return lockCount[i];
+	}
+
+	public static int getOwner(int i) {
+		return owner[i];
+	}
+
+	public static int getReservedBy(int i) {
+		return reservedBy[i];
+	}
+
+	public static long getLoadOrder(int i) {
+		return loadOrder[i];
+	}
+
+	// Word readers: bit k of word w is frame 64 * w + k
+
+	public static int words() {
+		return referenced.length;
+	}
+
+	public static synchronized long referencedWord(int w) {
+		return referenced[w];
+	}
+
+	// Frames that can be evicted or swapped out: occupied, neither reserved nor
+	// locked
+	public static synchronized long evictableWord(int w) {
+		return occupied[w] & ~(reserved[w] | locked[w]) & validBits(w);
+	}
+
+	// Frames the clock leaves free once it has visited them: evictable clean
+	// frames that are not referenced, and empty frames that are only held back
+	// by their referenced bit
+	public static synchronized long freedOnVisitWord(int w) {
+		long usable = ~(dirty[w] | reserved[w] | locked[w]) & validBits(w);
+		return usable & (occupied[w] & ~referenced[w] | ~occupied[w] & referenced[w]);
+	}
+
+	public static synchronized long dirtyWord(int w) {
+		return dirty[w];
+	}
+
+	public static synchronized long lockedWord(int w) {
+		return locked[w];
+	}
+
+	/*
+	 * Returns the number of frames that are neither reserved nor locked.
+	 */
+	public static synchronized int numUsableFrames() {
+		int usable = 0;
+		for (int w = 0; w < reserved.length; w++)
+			usable += Long.bitCount(~(reserved[w] | locked[w]) & validBits(w));
+		return usable;
+	}
+
+	/*
+	 * Returns the index of the first frame, starting from frame[from] and wrapping
+	 * around, that holds a page advised DontNeed or Free and is neither reserved
+	 * nor locked, or -1 if there is none.
+	 */
+	public static synchronized int firstDontNeedFrame(int from) {
+		int words = dontNeed.length;
+		for (int n = 0; n <= words; n++) {
+			int w = ((from >>> 6) + n) % words;
+			long candidates = dontNeed[w] & occupied[w] & ~(reserved[w] | locked[w]);
+
+			// The word of frame[from] is searched from frame[from] first, and the
+			// frames before it last
+			if (n == 0)
+				candidates &= -1L << from;
+			else if (n == words)
+				candidates &= ~(-1L << from);
+			if (candidates != 0)
+				return (w << 6) + Long.numberOfTrailingZeros(candidates);
+		}
+		return -1;
+	}
+
+	/*
+	 * Returns the index of the first frame, starting from frame[0], that holds no
+	 * page and is neither reserved nor locked, or -1 if there is none.
+	 */
+	public static synchronized int firstUnusedFrame() {
+		for (int w = 0; w < occupied.length; w++) {
+			long candidates = ~(occupied[w] | reserved[w] | locked[w]) & validBits(w);
+			if (candidates != 0)
+				return (w << 6) + Long.numberOfTrailingZeros(candidates);
+		}
+		return -1;
+	}
+
+	// Mask of the bits of word w that correspond to real frames
+	static long validBits(int w) {
+		int remaining = size - (w << 6);
+		return remaining >= 64 ? -1L : (1L << remaining) - 1;
+	}
+
+	// Mask of the bits of word w that fall in [from, to)
+	static long rangeBits(int w, int from, int to) {
+		long bits = -1L;
+		if (w == from >>> 6)
+			bits &= -1L << from;
+		if (w == (to - 1) >>> 6 && (to & 63) != 0)
+			bits &= (1L << to) - 1;
+		return bits;
+	}
+}
@@ -61,6 +61,18 @@ public class MMU extends IflMMU {
 		for (int i = 0; i < MMU.getFrameTableSize(); i++) {
 			MMU.setFrame(i, new FrameTableEntry(i));
 		}
+
+		// Build the packed frame metadata columns
+		FrameMetadata.init();
+
+		// Statistics of the page fault handler
+		PageFaultHandler.init();
+
+		// Reset the miss ratio curve estimators
+		MissRatioCurve.init();
+
+		// Shadow policies for -userOption Adaptive
+		AdaptivePolicy.init();
 	}
 
 	/**
@@ -91,12 +103,17 @@ public class MMU extends IflMMU {
 
 		// Accesses PageTable to get page of calculated number
 		PageTableEntry PTE = getPTBR().pages[PageNum];
+		PageFaultHandler.numReferences++;
+
+		// Feed the reference to the miss ratio curve estimators
+		MissRatioCurve.record(getPTBR().getTask(), PageNum);
+		AdaptivePolicy.record(getPTBR().getTask(), PageNum, referenceType == GlobalVariables.MemoryWrite);
 
 		// Check page's validity --> if valid, set referenced and dirty bits accordingly
 		if (PTE.isValid()) {
-			PTE.getFrame().setReferenced(true);
+			FrameMetadata.setReferenced(PTE.getFrame(), true);
 			if (referenceType == GlobalVariables.MemoryWrite)
-				PTE.getFrame().setDirty(true);
+				FrameMetadata.setDirty(PTE.getFrame(), true);
 			return PTE;
 		}
 
@@ -116,9 +133,9 @@ public class MMU extends IflMMU {
 				// Check thread status after interrupt --> if not killed, set referenced and
 				// dirty bits accordingly
 				if (thread.getStatus() != GlobalVariables.ThreadKill) {
-					PTE.getFrame().setReferenced(true);
+					FrameMetadata.setReferenced(PTE.getFrame(), true);
 					if (referenceType == GlobalVariables.MemoryWrite)
-						PTE.getFrame().setDirty(true);
+						FrameMetadata.setDirty(PTE.getFrame(), true);
 					return PTE;
 				}
 
@@ -136,9 +153,9 @@ public class MMU extends IflMMU {
 				// Check thread status after suspension --> if not killed, set referenced and
 				// dirty bits accordingly
 				if (thread.getStatus() != GlobalVariables.ThreadKill) {
-					PTE.getFrame().setReferenced(true);
+					FrameMetadata.setReferenced(PTE.getFrame(), true);
 					if (referenceType == GlobalVariables.MemoryWrite)
-						PTE.getFrame().setDirty(true);
+						FrameMetadata.setDirty(PTE.getFrame(), true);
 					return PTE;
 				}
 
@@ -170,4 +187,4 @@ public class MMU extends IflMMU {
 	 */
 	public static void atWarning() {
 	}
-}
\ No newline at end of file
+}
\ No newline at end of file
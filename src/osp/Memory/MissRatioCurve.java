@@ -0,0 +1,379 @@
+package osp.Memory;
+
+import java.util.*;
+import osp.Tasks.*;
+import osp.Hardware.*;
+
+/**
+ * The MissRatioCurve class estimates, from the live reference stream seen by
+ * MMU.do_refer(), how the page fault ratio of the running workload would change
+ * with the number of frames of physical memory. It is a sampled reuse-distance
+ * estimator in the style of SHARDS: every reference is hashed, and only the
+ * pages whose hash falls below a threshold are tracked. Tracked pages are kept
+ * in a bounded set; when the set is full, the threshold is lowered and the
+ * pages with the largest hashes are dropped, so memory never grows past
+ * MaxSamples entries no matter how long the simulation runs. Reuse distances
+ * go into at most MaxBuckets histogram buckets, several frames wide on large
+ * frame tables.
+ *
+ * Each sampled reference is weighted by the inverse of the sampling rate at
+ * the time. The overall curve is normalized by the true number of references,
+ * and the difference between that and the weighted number of sampled
+ * references is credited to the first bucket (the SHARDS-adj correction),
+ * which removes most of the error from a few hot pages being sampled or not.
+ *
+ * One estimator covers all tasks, and one smaller estimator is kept per live
+ * task. The estimator of the task that made the last reference is kept at
+ * hand, so the per-task table is only searched when the referencing task
+ * changes, and the simulated time is only read on sampled references: an
+ * unsampled reference costs a hash, two counters and three compares.
+ *
+ * The curves are printed at every snapshot of the run (SimulationLength /
+ * NumberOfSnapshots, or -Dosp.memory.snapshotInterval) and at the end of the
+ * run; a task's curve is printed once more and dropped when the task ends.
+ *
+ * @OSPProject Memory
+ */
+public class MissRatioCurve {
+	// Size of the hash space used for sampling
+	static final long Modulus = 1L << 24;
+
+	// Bound on the number of pages tracked by the global and per-task estimators
+	static final int MaxSamples = 4096;
+	static final int MaxTaskSamples = 512;
+
+	// Bound on the number of reuse distance histogram buckets
+	static final int MaxBuckets = 1024;
+
+	// Number of points printed for each curve
+	static final int CurvePoints = 16;
+
+	// Global estimator and one estimator per task ID
+	static MissRatioCurve all;
+	static HashMap<Integer, MissRatioCurve> perTask;
+
+	// Frame count of the configuration being estimated
+	static int frames;
+
+	// Estimator of the task that made the last reference
+	static int lastTaskID;
+	static MissRatioCurve lastTask;
+
+	// Simulation time of the next dump
+	static long snapshotInterval;
+	static long nextSnapshot;
+
+	// Sampling state: pages with hash < threshold are tracked
+	long threshold;
+	int maxSamples;
+
+	// Tracked pages, ordered by hash so the largest can be dropped first
+	HashMap<Long, Sample> samples;
+	TreeSet<Sample> byHash;
+
+	// Fenwick tree over logical access times: slot t holds 1 if some tracked page
+	// was last referenced at time t. The number of set slots after a page's last
+	// access is its reuse distance.
+	int[] tree;
+	int clock;
+
+	// Reuse distance histogram, weighted by 1/samplingRate at record time, with
+	// bucketWidth distances per bucket; the last bucket holds cold misses and
+	// distances beyond the histogram
+	double[] histogram;
+	int bucketWidth;
+	double sampledReferences;
+
+	// All references seen, sampled or not
+	long references;
+
+	// A tracked page: its key, hash and the logical time of its last access
+	static class Sample {
+		long key;
+		long hash;
+		int lastAccess;
+
+		Sample(long key, long hash) {
+			this.key = key;
+			this.hash = hash;
+		}
+	}
+
+	// Estimator constructor w/ the bound on tracked pages and the largest
+	// distance (in frames) that gets its own histogram bucket
+	MissRatioCurve(int maxSamples, int maxDistance) {
+		this.maxSamples = maxSamples;
+		this.threshold = Modulus;
+		this.samples = new HashMap<Long, Sample>();
+		this.byHash = new TreeSet<Sample>(new Comparator<Sample>() {
+			public int compare(Sample a, Sample b) {
+				if (a.hash != b.hash)
+					return a.hash < b.hash ? -1 : 1;
+				return Long.compare(a.key, b.key);
+			}
+		});
+		this.tree = new int[4 * maxSamples + 1];
+		this.clock = 0;
+		this.bucketWidth = (maxDistance + MaxBuckets - 1) / MaxBuckets;
+		this.histogram = new double[(maxDistance + bucketWidth - 1) / bucketWidth + 1];
+		this.sampledReferences = 0;
+		this.references = 0;
+	}
+
+	/*
+	 * Called from MMU.init(). Resets all estimators, takes the snapshot interval
+	 * from the run and registers the end-of-run dump.
+	 */
+	public static void init() {
+		// Snapshot interval of the run (osp.Utilities.b is OSP's Simulation class,
+		// holding SimulationLength in g and NumberOfSnapshots in j)
+		long runInterval = osp.Utilities.b.j > 0 ? osp.Utilities.b.g / osp.Utilities.b.j : 0;
+		long interval = Long.getLong("osp.memory.snapshotInterval", runInterval);
+		if (interval != runInterval)
+			System.out.println("Miss Ratio Curves: snapshot interval " + interval
+					+ " differs from the run's SimulationLength/NumberOfSnapshots = " + runInterval);
+		if (interval <= 0)
+			System.out.println("Miss Ratio Curves: no snapshot interval, curves are printed at the end only");
+
+		reset(MMU.getFrameTableSize(), interval);
+
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			public void run() {
+				dump();
+			}
+		});
+	}
+
+	/*
+	 * Resets all estimators for a configuration with the given number of frames.
+	 * A snapshot interval of 0 turns off the periodic dumps (used outside the
+	 * simulator, where there is no simulated time).
+	 */
+	public static void reset(int frameCount, long interval) {
+		frames = frameCount;
+		all = new MissRatioCurve(MaxSamples, maxDistance());
+		perTask = new HashMap<Integer, MissRatioCurve>();
+		lastTaskID = -1;
+		lastTask = null;
+
+		snapshotInterval = interval;
+		nextSnapshot = snapshotInterval;
+	}
+
+	// Largest distance worth a bucket: four times the frame table
+	static int maxDistance() {
+		return Math.max(4 * frames, CurvePoints);
+	}
+
+	/*
+	 * Records one reference to page pageNum of the given task. For unsampled pages
+	 * this costs one hash, two counters and three comparisons.
+	 */
+	public static void record(TaskCB task, int pageNum) {
+		record(task.getID(), pageNum);
+	}
+
+	// Records one reference given the task ID
+	public static void record(int taskID, int pageNum) {
+		if (all == null)
+			return;
+
+		long key = key(taskID, pageNum);
+		long hash = hash(key);
+
+		all.references++;
+		if (hash < all.threshold) {
+			all.access(key, hash);
+
+			// Dump the curves once per snapshot interval of simulated time
+			if (snapshotInterval > 0) {
+				long now = HClock.get();
+				if (now >= nextSnapshot) {
+					nextSnapshot = (now / snapshotInterval + 1) * snapshotInterval;
+					dump();
+				}
+			}
+		}
+
+		// The task's estimator is only looked up when the referencing task changes
+		if (taskID != lastTaskID) {
+			lastTask = perTask.get(taskID);
+			if (lastTask == null) {
+				lastTask = new MissRatioCurve(MaxTaskSamples, maxDistance());
+				perTask.put(taskID, lastTask);
+			}
+			lastTaskID = taskID;
+		}
+
+		lastTask.references++;
+		if (hash < lastTask.threshold)
+			lastTask.access(key, hash);
+	}
+
+	/*
+	 * Called when a task's memory is deallocated. Prints the task's final curve
+	 * and drops its estimator.
+	 */
+	public static void taskDone(int taskID) {
+		if (perTask == null)
+			return;
+
+		if (taskID == lastTaskID) {
+			lastTaskID = -1;
+			lastTask = null;
+		}
+
+		MissRatioCurve taskCurve = perTask.remove(taskID);
+		if (taskCurve != null)
+			taskCurve.print("task " + taskID + " (ended)");
+	}
+
+	// Key of a page: task ID in the high half, page number in the low half
+	static long key(int taskID, int pageNum) {
+		return ((long) taskID << 32) | (pageNum & 0xffffffffL);
+	}
+
+	// Mixes the page key into [0, Modulus) (finalizer of SplitMix64)
+	static long hash(long key) {
+		long z = key + 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		z = z ^ (z >>> 31);
+		return z & (Modulus - 1);
+	}
+
+	// Current sampling rate
+	double rate() {
+		return (double) threshold / Modulus;
+	}
+
+	// Processes one reference to a sampled page (hash < threshold)
+	void access(long key, long hash) {
+		// Out of logical time slots --> renumber before touching the tree
+		if (clock + 1 >= tree.length)
+			compact();
+
+		double weight = 1.0 / rate();
+		sampledReferences += weight;
+
+		Sample sample = samples.get(key);
+		if (sample == null) {
+			// First reference to this page: cold miss
+			histogram[histogram.length - 1] += weight;
+
+			sample = new Sample(key, hash);
+			samples.put(key, sample);
+			byHash.add(sample);
+		} else {
+			// Distinct sampled pages referenced since the last access, scaled up
+			// by the sampling rate
+			int distinct = sum(clock) - sum(sample.lastAccess);
+			int bucket = (int) (distinct / rate()) / bucketWidth;
+			if (bucket < histogram.length - 1)
+				histogram[bucket] += weight;
+			else
+				histogram[histogram.length - 1] += weight;
+
+			add(sample.lastAccess, -1);
+		}
+
+		clock++;
+		sample.lastAccess = clock;
+		add(clock, 1);
+
+		// Keep the tracked set bounded by lowering the threshold
+		while (samples.size() > maxSamples) {
+			Sample largest = byHash.pollLast();
+			threshold = largest.hash;
+			samples.remove(largest.key);
+			add(largest.lastAccess, -1);
+		}
+	}
+
+	// Renumbers the last access times of the tracked pages to 1..n
+	void compact() {
+		ArrayList<Sample> order = new ArrayList<Sample>(samples.values());
+		Collections.sort(order, new Comparator<Sample>() {
+			public int compare(Sample a, Sample b) {
+				return Integer.compare(a.lastAccess, b.lastAccess);
+			}
+		});
+
+		Arrays.fill(tree, 0);
+		clock = 0;
+		for (Sample sample : order) {
+			clock++;
+			sample.lastAccess = clock;
+			add(clock, 1);
+		}
+	}
+
+	// Fenwick tree update
+	void add(int index, int delta) {
+		for (int i = index; i < tree.length; i += i & -i)
+			tree[i] += delta;
+	}
+
+	// Fenwick tree prefix sum over [1, index]
+	int sum(int index) {
+		int total = 0;
+		for (int i = index; i > 0; i -= i & -i)
+			total += tree[i];
+		return total;
+	}
+
+	/*
+	 * Returns the estimated fault ratio with the given number of frames: the share
+	 * of references whose reuse distance is not smaller than the frame count. The
+	 * bucket the frame count falls in is counted in proportion.
+	 */
+	public double missRatio(int frames) {
+		if (references == 0)
+			return 0.0;
+
+		// SHARDS-adj: the references the sampling over- or under-counted go to the
+		// smallest distances
+		double hits = references - sampledReferences;
+		int full = frames / bucketWidth;
+		for (int b = 0; b < full && b < histogram.length - 1; b++)
+			hits += histogram[b];
+		if (full < histogram.length - 1)
+			hits += histogram[full] * (frames % bucketWidth) / bucketWidth;
+
+		return Math.min(1.0, Math.max(0.0, 1.0 - hits / references));
+	}
+
+	// Prints this curve at CurvePoints frame counts up to maxDistance()
+	void print(String label) {
+		int limit = (histogram.length - 1) * bucketWidth;
+		int step = Math.max(1, limit / CurvePoints);
+
+		StringBuffer line = new StringBuffer();
+		line.append("MRC ").append(label).append(" (refs=").append(references).append(", rate=")
+				.append(String.format("%.3f", rate())).append("):");
+		for (int frames = step; frames <= limit; frames += step)
+			line.append(' ').append(frames).append('=').append(String.format("%.3f", missRatio(frames)));
+		System.out.println(line);
+	}
+
+	/*
+	 * Prints the overall curve and the curve of every task seen so far. Each entry
+	 * reads frames=missRatio; the entry at MMU.getFrameTableSize() is the current
+	 * configuration.
+	 */
+	public static void dump() {
+		if (all == null)
+			return;
+
+		System.out.println("Miss Ratio Curves at time " + HClock.get() + " (frames in use = " + frames
+				+ ", estimated miss ratio = " + String.format("%.3f", all.missRatio(frames)) + ")");
+		printCurves();
+	}
+
+	// Prints the overall curve and the per-task curves
+	static void printCurves() {
+		all.print("all tasks");
+		for (Map.Entry<Integer, MissRatioCurve> entry : perTask.entrySet())
+			entry.getValue().print("task " + entry.getKey());
+	}
+}
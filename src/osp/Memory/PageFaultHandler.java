@@ -26,6 +26,62 @@ public class PageFaultHandler extends IflPageFaultHandler {
 	// Creating a Global Variable to keep count of Page Faults
 	static int numPageFaults = 0;
 
+	// Number of memory references handled by MMU.do_refer()
+	static long numReferences = 0;
+
+	// Swap traffic and access hint statistics
+	static int numSwapIns = 0;
+	static int numSwapOuts = 0;
+	static int numReadAheads = 0;
+	static int numWillNeedPrefetches = 0;
+	static int numDontNeedEvictions = 0;
+	static int numFreeDrops = 0;
+
+	// Swap latency in simulated time, and an upper bound on the part of it that
+	// overlapping the write-back of a dirty victim with the read of the faulted
+	// page could save. Only a bound: every task's swap file is on the one swap
+	// device, which serves the write and the read one after the other, so no
+	// saving is possible in this setup.
+	static long swapOutTime = 0;
+	static long swapInTime = 0;
+	static int numDirtyFaults = 0;
+	static long overlapBound = 0;
+
+	// Number of pages brought into frames so far (stamped on each frame by SwapIn()
+	// as the load order of its page for Fifo())
+	static long loadCount = 0;
+
+	// Number of pages read ahead after a fault on an AdviceSequential page
+	static int readAheadDepth = Integer.getInteger("osp.memory.readAhead", 4);
+
+	/*
+	 * Called from MMU.init(). Prints the statistics at the end of the run.
+	 */
+	public static void init() {
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			public void run() {
+				printStatistics();
+			}
+		});
+	}
+
+	// Prints the page fault, swap and hint counters on one line
+	public static void printStatistics() {
+		System.out.println("Memory Statistics: frames=" + MMU.getFrameTableSize() + " references=" + numReferences
+				+ " faults=" + numPageFaults
+				+ " swapIns=" + numSwapIns + " swapOuts=" + numSwapOuts + " readAheads=" + numReadAheads
+				+ " willNeedPrefetches=" + numWillNeedPrefetches + " dontNeedEvictions=" + numDontNeedEvictions
+				+ " freeDrops=" + numFreeDrops + " dirtyFaults=" + numDirtyFaults + " avgSwapOut="
+				+ average(swapOutTime, numSwapOuts) + " avgSwapIn=" + average(swapInTime, numSwapIns)
+				+ " overlapBoundPerDirtyFault=" + average(overlapBound, numDirtyFaults) + " policySwitches="
+				+ AdaptivePolicy.numSwitches);
+	}
+
+	// Total divided by count, with two decimals
+	static String average(long total, int count) {
+		return String.format(Locale.ROOT, "%.2f", count == 0 ? 0.0 : (double) total / count);
+	}
+
 	/**
 	 * This method handles a page fault.
 	 * 
@@ -84,10 +140,11 @@ public class PageFaultHandler extends IflPageFaultHandler {
 	// Last Modification Date: 19/4/2020
 	// Page Fault Handling Method
 	public static int do_handlePageFault(ThreadCB thread, int referenceType, PageTableEntry page) {
-		// Counter to iterate through memory --> counts reserved or locked frames
-		int counter = 0;
 		FrameTableEntry frame;
 
+		// Pick up frame changes made by completed I/O
+		FrameMetadata.sync();
+
 		// Check if page is valid --> if so return failure
 		if (page.isValid()) {
 			page.notifyThreads();
@@ -101,22 +158,24 @@ public class PageFaultHandler extends IflPageFaultHandler {
 			// Check that the page does not already have a validating thread managing the
 			// page fault
 			// If so --> suspend and wait for original thread to finish
-			if (page.getValidatingThread() != null)
+			if (page.getValidatingThread() != null) {
 				thread.suspend(page);
-			else // Increment page faults
+
+				// Brought in by the other thread (e.g. a prefetch) --> nothing left to do
+				if (page.isValid()) {
+					page.notifyThreads();
+					ThreadCB.dispatch();
+					return thread.getStatus() == ThreadKill ? FAILURE : SUCCESS;
+				}
+			} else // Increment page faults
 				numPageFaults++;
 
 			System.out.println("Total Number of Page Faults = " + numPageFaults);
 
-			// Checking if there's enough memory
-			for (int i = 0; i < MMU.getFrameTableSize(); i++) {
-				if (MMU.getFrame(i).isReserved() || MMU.getFrame(i).getLockCount() > 0)
-					counter++;
-			}
-
+			// Checking if there's enough memory --> every frame reserved or locked
 			// Not enough memory --> notify threads suspended on page and dispatch()
 			// return NotEnoughMemory
-			if (counter == MMU.getFrameTableSize()) {
+			if (FrameMetadata.numUsableFrames() == 0) {
 				page.notifyThreads();
 				ThreadCB.dispatch();
 				return NotEnoughMemory;
@@ -138,7 +197,7 @@ public class PageFaultHandler extends IflPageFaultHandler {
 				if (freeFrame != null) {
 					// Reserve the frame so no other tasks get control of it before finishing
 					// swapping operations
-					freeFrame.setReserved(thread.getTask());
+					FrameMetadata.setReserved(freeFrame, thread.getTask());
 
 					// Update Page Table
 					page.setFrame(freeFrame);
@@ -146,32 +205,32 @@ public class PageFaultHandler extends IflPageFaultHandler {
 					// Swap In Page into Memory
 					SwapIn(thread, page);
 
+					// While the page is still being validated, prefetch from the access
+					// hints
+					applyHints(thread, page);
+
 					// Check Thread Status --> if killed while waiting on swapping, notify threads
 					// and return failure
-					if (thread.getStatus() == ThreadKill) {
-						page.notifyThreads();
-						page.setValidatingThread(null);
-						event.notifyThreads();
-						ThreadCB.dispatch();
-						return FAILURE;
-					}
+					if (thread.getStatus() == ThreadKill)
+						return threadKilled(thread, page, freeFrame, event);
 
 					// Update PageTable
 					page.setValid(true);
 
 					// Update FrameTable
-					freeFrame.setPage(page);
-					freeFrame.setReferenced(true);
+					FrameMetadata.setPage(freeFrame, page);
+					FrameMetadata.setReferenced(freeFrame, true);
 
 					// Setting Dirty Flag --> Only if refernce type is MemoryWrite
 					if (referenceType == MemoryWrite)
-						freeFrame.setDirty(true);
+						FrameMetadata.setDirty(freeFrame, true);
 
 					// Perform Necessary Actions before exiting Page Fault Handler
 					// Unreserve, notify, dispatch, return success, set validating thread to null.
-					freeFrame.setUnreserved(thread.getTask());
+					FrameMetadata.setUnreserved(freeFrame, thread.getTask());
 					page.setValidatingThread(null);
 					page.notifyThreads();
+
 					event.notifyThreads();
 					ThreadCB.dispatch();
 					return SUCCESS;
@@ -179,22 +238,27 @@ public class PageFaultHandler extends IflPageFaultHandler {
 
 				// If free frame not found
 				else {
-					// Check User Option for Page Replacement Algorithm (FIFO or ESC)
-					if (userOption.equals("Fifo")) {
-						frame = Fifo();
-					}
-
-					else {
-						frame = SecondChance();
+					// Pages the tasks said they don't need go first
+					frame = DontNeed();
+
+					// Check User Option for Page Replacement Algorithm (FIFO or ESC, or the
+					// current choice of the adaptive mode)
+					if (frame == null) {
+						if (AdaptivePolicy.policy().equals("Fifo")) {
+							frame = Fifo();
+						}
 
+						else {
+							frame = SecondChance();
+						}
 					}
 
 					// Reserve the frame so no other tasks get control of it before finishing
 					// swapping operations
-					frame.setReserved(thread.getTask());
+					FrameMetadata.setReserved(frame, thread.getTask());
 
 					// Check if dirty --> if so, it needs swapping out.
-					if (frame.isDirty()) {
+					if (FrameMetadata.isDirty(frame.getID())) {
 						System.out.println("Dirty Frame");
 
 						// Save previous page of frame before swapping out to later update it's Page
@@ -202,61 +266,58 @@ public class PageFaultHandler extends IflPageFaultHandler {
 						PageTableEntry prevPage = frame.getPage();
 
 						// Swap Out page from Memory
-						SwapOut(thread, frame);
+						long writeTime = SwapOut(thread, frame);
 
 						// Check Thread Status --> if killed while waiting on swapping, notify threads
 						// and return failure
-						if (thread.getStatus() == ThreadKill) {
-							System.out.println("Thread Killed #1");
-							page.notifyThreads();
-							page.setValidatingThread(null);
-							event.notifyThreads();
-							ThreadCB.dispatch();
-							return FAILURE;
-						}
+						if (thread.getStatus() == ThreadKill)
+							return threadKilled(thread, page, frame, event);
 
 						// Freeing Frame
-						frame.setReferenced(false);
+						FrameMetadata.setReferenced(frame, false);
 
 						// Updating Frame's Previous Page
 						prevPage.setValid(false);
 						prevPage.setFrame(null);
 
 						// Freeing Frame cont.
-						frame.setDirty(false);
-						frame.setPage(null);
+						FrameMetadata.setDirty(frame, false);
+						FrameMetadata.setPage(frame, null);
 
 						// Setting frame for current page
 						page.setFrame(frame);
 
 						// Swap In Page into Memory
-						SwapIn(thread, page);
+						long readTime = SwapIn(thread, page);
+
+						// The most issuing the write-back and the read together could save
+						numDirtyFaults++;
+						overlapBound += Math.min(writeTime, readTime);
+
+						// While the page is still being validated, prefetch from the access
+						// hints
+						applyHints(thread, page);
 
 						// Check Thread Status --> if killed while waiting on swapping, notify threads
 						// and return failure
-						if (thread.getStatus() == ThreadKill) {
-							System.out.println("Thread Killed #2");
-							page.notifyThreads();
-							page.setValidatingThread(null);
-							event.notifyThreads();
-							ThreadCB.dispatch();
-							return FAILURE;
-						}
+						if (thread.getStatus() == ThreadKill)
+							return threadKilled(thread, page, frame, event);
 
 						// Update PageTable
 						page.setValid(true);
 
 						// Update FrameTable
-						frame.setPage(page);
-						frame.setReferenced(true);
+						FrameMetadata.setPage(frame, page);
+						FrameMetadata.setReferenced(frame, true);
 
 						// Setting Dirty Flag --> Only if reference type is MemoryWrite
 						if (referenceType == MemoryWrite)
-							frame.setDirty(true);
+							FrameMetadata.setDirty(frame, true);
 
-						frame.setUnreserved(thread.getTask());
+						FrameMetadata.setUnreserved(frame, thread.getTask());
 						page.setValidatingThread(null);
 						page.notifyThreads();
+
 						event.notifyThreads();
 						ThreadCB.dispatch();
 						return SUCCESS;
@@ -272,32 +333,31 @@ public class PageFaultHandler extends IflPageFaultHandler {
 						// Swap In Page into Memory
 						SwapIn(thread, page);
 
+						// While the page is still being validated, prefetch from the access
+						// hints
+						applyHints(thread, page);
+
 						// Check Thread Status (FAILURE if killed)
-						if (thread.getStatus() == ThreadKill) {
-							System.out.println("Thread Killed #3");
-							page.notifyThreads();
-							page.setValidatingThread(null);
-							event.notifyThreads();
-							ThreadCB.dispatch();
-							return FAILURE;
-						}
+						if (thread.getStatus() == ThreadKill)
+							return threadKilled(thread, page, frame, event);
 
 						// Update PageTable
 						page.setValid(true);
 
 						// Update FrameTable
-						frame.setPage(page);
-						frame.setReferenced(true);
+						FrameMetadata.setPage(frame, page);
+						FrameMetadata.setReferenced(frame, true);
 
 						// Setting Dirty Flag --> Only if reference type is MemoryWrite
 						if (referenceType == MemoryWrite)
-							frame.setDirty(true);
+							FrameMetadata.setDirty(frame, true);
 
 						// Perform Necessary Actions before exiting Page Fault Handler
 						// Unreserve, notify, dispatch, return success, set validating thread to null.
-						frame.setUnreserved(thread.getTask());
+						FrameMetadata.setUnreserved(frame, thread.getTask());
 						page.setValidatingThread(null);
 						page.notifyThreads();
+
 						event.notifyThreads();
 						ThreadCB.dispatch();
 						return SUCCESS;
@@ -307,6 +367,182 @@ public class PageFaultHandler extends IflPageFaultHandler {
 		}
 	}
 
+	/*
+	 * Cleans up after the faulting thread was killed while waiting on a swap (see
+	 * releaseKilled()), then wakes up the threads waiting on the fault. Returns
+	 * FAILURE.
+	 */
+
+	// Thread Killed Method
+	static int threadKilled(ThreadCB thread, PageTableEntry page, FrameTableEntry frame, SystemEvent event) {
+		System.out.println("Thread Killed");
+		releaseKilled(thread, page, frame);
+
+		event.notifyThreads();
+		ThreadCB.dispatch();
+		return FAILURE;
+	}
+
+	/*
+	 * Gives up the swap-in of a page whose thread was killed: wakes up the threads
+	 * waiting on the page and gives back the frame reserved for it if the task
+	 * lives on (the frames reserved by a dead task are released by
+	 * PageTable.do_deallocateMemory()). The page keeps its frame, because OSP's
+	 * disk interrupt handler still reads it when the swap completes.
+	 */
+	static void releaseKilled(ThreadCB thread, PageTableEntry page, FrameTableEntry frame) {
+		page.notifyThreads();
+		page.setValidatingThread(null);
+
+		TaskCB task = thread.getTask();
+		if (task.getStatus() == TaskLive && frame.getReserved() == task)
+			FrameMetadata.setUnreserved(frame, task);
+	}
+
+	/*
+	 * Swaps in an invalid page that nobody is validating into a free frame, on
+	 * behalf of the given thread. Nothing is evicted to make room. The page is
+	 * left clean and not referenced, so it is the first to go if it is never
+	 * used. Returns false if there is no free frame or the thread was killed.
+	 */
+
+	// Prefetch Method into a Free Frame
+	public static boolean prefetch(ThreadCB thread, PageTableEntry page) {
+		FrameTableEntry freeFrame = getFreeFrame();
+		if (freeFrame == null)
+			return false;
+
+		// Reserve the frame and validate the page as in a regular page fault
+		page.setValidatingThread(thread);
+		FrameMetadata.setReserved(freeFrame, thread.getTask());
+		page.setFrame(freeFrame);
+
+		// Swap In Page into Memory
+		page.prefetching = true;
+		SwapIn(thread, page);
+		page.prefetching = false;
+
+		// Check Thread Status --> if killed while waiting on swapping, give up the
+		// page and the frame as a regular fault would
+		if (thread.getStatus() == ThreadKill) {
+			System.out.println("Thread Killed");
+			releaseKilled(thread, page, freeFrame);
+			return false;
+		}
+
+		// Update PageTable and FrameTable
+		page.setValid(true);
+		FrameMetadata.setPage(freeFrame, page);
+
+		FrameMetadata.setUnreserved(freeFrame, thread.getTask());
+		page.setValidatingThread(null);
+		page.notifyThreads();
+		return true;
+	}
+
+	/*
+	 * Applies the access hints during a page fault on the given page: reads ahead
+	 * after a Sequential page and prefetches the task's WillNeed pages. Only free
+	 * frames are used, so hints never cause evictions. Called once the faulted
+	 * page is swapped in but before it is made valid, so it cannot be evicted or
+	 * written meanwhile. Does nothing if the thread was killed during the swap-in.
+	 */
+
+	// Access Hints Method
+	public static void applyHints(ThreadCB thread, PageTableEntry page) {
+		if (thread.getStatus() == ThreadKill)
+			return;
+
+		PageTable pageTable = page.getTask().getPageTable();
+		int pageNum = page.getID();
+
+		// Read ahead the following pages
+		if (pageTable.getAdvice(pageNum) == PageTable.AdviceSequential) {
+			for (int i = pageNum + 1; i <= pageNum + readAheadDepth && i < pageTable.pages.length; i++) {
+				PageTableEntry next = pageTable.pages[i];
+				if (next.isValid() || next.getValidatingThread() != null)
+					continue;
+				if (!prefetch(thread, next))
+					return;
+				numReadAheads++;
+			}
+		}
+
+		// Prefetch the pages advised as WillNeed, then clear the hint
+		for (int i = 0; i < pageTable.pages.length && pageTable.willNeedPages > 0; i++) {
+			if (pageTable.getAdvice(i) != PageTable.AdviceWillNeed)
+				continue;
+
+			PageTableEntry next = pageTable.pages[i];
+			if (!next.isValid() && next.getValidatingThread() == null) {
+				if (!prefetch(thread, next))
+					return;
+				numWillNeedPrefetches++;
+			}
+			pageTable.setAdvice(i, PageTable.AdviceNormal);
+		}
+	}
+
+	/*
+	 * Returns a frame holding a page advised as DontNeed or Free that is neither
+	 * reserved nor locked, freeing it first if it is clean (like Fifo(), a dirty
+	 * frame is returned as is for the caller to swap out). The search starts at
+	 * MMU.Cursor and moves the cursor past the frame, as the clock does. Returns
+	 * null if there is no such page.
+	 */
+
+	// DontNeed Page Replacement
+	public static FrameTableEntry DontNeed() {
+		if (PageTable.dontNeedPages == 0)
+			return null;
+
+		// Resident DontNeed/Free pages are kept in a FrameMetadata column
+		int i = FrameMetadata.firstDontNeedFrame(MMU.Cursor);
+		if (i < 0)
+			return null;
+
+		FrameTableEntry frame = MMU.getFrame(i);
+		PageTableEntry page = frame.getPage();
+		if (page == null)
+			return null;
+
+		numDontNeedEvictions++;
+		MMU.Cursor = (i + 1) % MMU.getFrameTableSize();
+
+		// If dirty --> the caller swaps it out
+		if (FrameMetadata.isDirty(i))
+			return frame;
+
+		// If not dirty --> free it
+		dropIfClean(page);
+		return frame;
+	}
+
+	/*
+	 * Evicts a valid page without write-back if its frame is clean, unreserved and
+	 * unlocked. Returns true if the page was dropped.
+	 */
+	public static boolean dropIfClean(PageTableEntry page) {
+		FrameTableEntry frame = page.getFrame();
+		int i = frame.getID();
+		if (FrameMetadata.isDirty(i) || FrameMetadata.isReserved(i) || FrameMetadata.isLocked(i))
+			return false;
+
+		if (page.getTask().getPageTable().getAdvice(page.getID()) == PageTable.AdviceFree)
+			numFreeDrops++;
+
+		// Freeing the Frame
+		FrameMetadata.setReferenced(frame, false);
+
+		// Updating the victim's Page Table
+		page.setValid(false);
+		page.setFrame(null);
+
+		// Freeing the Frame cont.
+		FrameMetadata.setPage(frame, null);
+		return true;
+	}
+
 	/*
 	 * Returns the current number of free frames. It does not matter where the
 	 * search in the frame table starts, but this method must not change the value
@@ -317,15 +553,8 @@ public class PageFaultHandler extends IflPageFaultHandler {
 	// Orjwan Zaafarani 1506807
 	// Last Modification Date: 10/4/2020
 	public static int numFreeFrames() {
-		int freeFrames = 0;
-		for (int i = 0; i < MMU.getFrameTableSize(); i++) {
-			FrameTableEntry frame = MMU.getFrame(i);
-			if (frame.getPage() == null && !frame.isReserved() && frame.getLockCount() <= 0 && !frame.isReferenced()
-					&& !frame.isDirty()) {
-				freeFrames++;
-			}
-		}
-		return freeFrames;
+		// Kept current by FrameMetadata on every frame update
+		return FrameMetadata.freeCount;
 	}
 
 	/*
@@ -336,14 +565,13 @@ public class PageFaultHandler extends IflPageFaultHandler {
 	// Orjwan Zaafarani 1506807
 	// Last Modification Date: 10/4/2020
 	public static FrameTableEntry getFreeFrame() {
-		// Iterates FrameTable for free frames (null page, not reserved, not locked)
-		for (int i = 0; i < MMU.getFrameTableSize(); i++) {
-			FrameTableEntry frame = MMU.getFrame(i);
-			if (frame.getPage() == null && !frame.isReserved() && frame.getLockCount() == 0) {
-				// If found, return the frame
-				return frame;
-			}
-		}
+		// Scans the packed columns for free frames (null page, not reserved, not
+		// locked)
+		int i = FrameMetadata.firstUnusedFrame();
+
+		// If found, return the frame
+		if (i >= 0)
+			return MMU.getFrame(i);
 		// If none, return null
 		return null;
 	}
@@ -370,61 +598,71 @@ public class PageFaultHandler extends IflPageFaultHandler {
 	// Last Modification Date: 12/4/2020
 	// Second Change Page Replacement Algorithm
 	public static FrameTableEntry SecondChance() {
-		boolean foundFirstDirtyFrame = false;
-		int firstDirtyFrameID;
+		int size = MMU.getFrameTableSize();
 		FrameTableEntry firstDirtyFrame = null;
 
-		// Outer Loop: iterates Frame Table at most twice
-		for (int j = 0; j < 2; j++) {
+		// Frames left to free before the clock stops (it stops when numFreeFrames()
+		// reaches wantFree)
+		int wanted = MMU.wantFree - numFreeFrames();
+
+		// The cursor goes round the Frame Table at most twice, visiting the frames
+		// of one word of the packed columns at a time
+		for (int visits = 2 * size; visits > 0 && wanted != 0;) {
+			int w = MMU.Cursor >>> 6;
+			int end = Math.min(Math.min((w + 1) << 6, size), MMU.Cursor + visits);
+			long visited = FrameMetadata.rangeBits(w, MMU.Cursor, end);
+
+			// Stop right after the frame that frees the last wanted frame
+			long freed = FrameMetadata.freedOnVisitWord(w) & visited;
+			if (wanted > 0 && Long.bitCount(freed) >= wanted) {
+				for (int k = 1; k < wanted; k++)
+					freed &= freed - 1;
+				long last = Long.lowestOneBit(freed);
+				visited &= (last << 1) - 1;
+				freed = FrameMetadata.freedOnVisitWord(w) & visited;
+			}
 
-			// Inner Loop: Iterates through all elements of Frame Table once
-			for (int i = 0; i < MMU.getFrameTableSize(); i++) {
-				// For not freeing more frames than wantFree --> if equal, stop second chance
-				if (numFreeFrames() == MMU.wantFree)
-					break;
+			// To Keep track of first dirty page found (unreserved and not locked)
+			long dirty = FrameMetadata.dirtyWord(w) & FrameMetadata.evictableWord(w) & visited;
+			if (firstDirtyFrame == null && dirty != 0)
+				firstDirtyFrame = MMU.getFrame((w << 6) + Long.numberOfTrailingZeros(dirty));
 
-				// Check Reference Bits --> If referenced, set to false
-				else if (MMU.getFrame(MMU.Cursor).isReferenced() == true) {
-					MMU.getFrame(MMU.Cursor).setReferenced(false);
-				}
+			// Check if frame is clean (clean, unreserved, not locked, and not referenced)
+			// --> evict it
+			long clean = freed & ~FrameMetadata.referencedWord(w);
 
-				// Check if frame is clean (clean, unreserved, not locked, and not referenced)
-				else if (MMU.getFrame(MMU.Cursor).getPage() != null & MMU.getFrame(MMU.Cursor).isReferenced() == false
-						& MMU.getFrame(MMU.Cursor).isDirty() == false & MMU.getFrame(MMU.Cursor).isReserved() == false
-						& MMU.getFrame(MMU.Cursor).getLockCount() <= 0) {
+			// Check Reference Bits --> If referenced, set to false (pinned frames are
+			// passed over without touching their bits)
+			FrameMetadata.clearReferenced(w, visited & ~FrameMetadata.lockedWord(w));
 
-					// If so --> set dirty and reference bits to false
-					MMU.getFrame(MMU.Cursor).setDirty(false);
-					MMU.getFrame(MMU.Cursor).setReferenced(false);
+			for (; clean != 0; clean &= clean - 1) {
+				FrameTableEntry frame = MMU.getFrame((w << 6) + Long.numberOfTrailingZeros(clean));
 
-					// + Update the frame's page attributes (make page invalid and nullify frame)
-					MMU.getFrame(MMU.Cursor).getPage().setValid(false);
-					MMU.getFrame(MMU.Cursor).getPage().setFrame(null);
+				// If so --> set dirty and reference bits to false
+				FrameMetadata.setDirty(frame, false);
+				FrameMetadata.setReferenced(frame, false);
 
-					// Nullify page for chosen frame
-					MMU.getFrame(MMU.Cursor).setPage(null);
+				// + Update the frame's page attributes (make page invalid and nullify frame)
+				PageTableEntry page = frame.getPage();
+				if (page != null) {
+					page.setValid(false);
+					page.setFrame(null);
 				}
 
-				// To Keep track of first dirty page found
-				if (foundFirstDirtyFrame == false & MMU.getFrame(MMU.Cursor).isDirty() == true
-						& MMU.getFrame(MMU.Cursor).isReserved() == false
-						& MMU.getFrame(MMU.Cursor).getLockCount() <= 0) {
-					firstDirtyFrameID = MMU.getFrame(MMU.Cursor).getID();
-					firstDirtyFrame = MMU.getFrame(MMU.Cursor);
-					foundFirstDirtyFrame = true;
-				}
-				// Increment MMU.Curson using modulus arithmetic
-				MMU.Cursor = (MMU.Cursor + 1) % MMU.getFrameTableSize();
+				// Nullify page for chosen frame
+				FrameMetadata.setPage(frame, null);
 			}
 
-			// For not freeing more frames than wantFree --> if equal, stop second chance
-			if (numFreeFrames() == MMU.wantFree)
-				break;
+			wanted -= Long.bitCount(freed);
+
+			// Advance MMU.Cursor past the visited frames using modulus arithmetic
+			visits -= Long.bitCount(visited);
+			MMU.Cursor = (MMU.Cursor + Long.bitCount(visited)) % size;
 		}
 
 		// Return either a freed frame or the dirty frame (in case the algorithm could
 		// not free any frames)
-		if (numFreeFrames() < MMU.wantFree && foundFirstDirtyFrame == true)
+		if (numFreeFrames() < MMU.wantFree && firstDirtyFrame != null)
 			return firstDirtyFrame;
 		else {
 			return getFreeFrame();
@@ -440,12 +678,12 @@ public class PageFaultHandler extends IflPageFaultHandler {
 		FrameTableEntry frame = null;
 
 		// Iterating Frame Table to find oldest page for replacement --> Done by
-		// Comparing creation time of page to surrent system time
-		for (int i = 0; i < MMU.getFrameTableSize(); i++) {
+		// Comparing load order column of frame to the current load count
+		for (int w = 0; w < FrameMetadata.words(); w++) {
 			// Frame can't be locked or reserved
-			if (!MMU.getFrame(i).isReserved() && MMU.getFrame(i).getLockCount() == 0) {
-				PageTableEntry page = MMU.getFrame(i).getPage();
-				long time = System.currentTimeMillis() - page.createTime;
+			for (long bits = FrameMetadata.evictableWord(w); bits != 0; bits &= bits - 1) {
+				int i = (w << 6) + Long.numberOfTrailingZeros(bits);
+				long time = loadCount - FrameMetadata.getLoadOrder(i);
 				System.out.println("Time in Frame Table = " + time);
 				if (time > max) {
 					max = time;
@@ -457,16 +695,19 @@ public class PageFaultHandler extends IflPageFaultHandler {
 		System.out.println("FIFO is invoked. Oldest = " + max);
 
 		// If not dirty
-		if (!frame.isDirty()) {
+		if (!FrameMetadata.isDirty(frame.getID())) {
 			// Freeing the Frame
-			frame.setReferenced(false);
+			FrameMetadata.setReferenced(frame, false);
 
-			// Updating the victim's Page Table
-			frame.getPage().setValid(false);
-			frame.getPage().setFrame(null);
+			// Updating the victim's Page Table (gone already if its task has ended)
+			PageTableEntry page = frame.getPage();
+			if (page != null) {
+				page.setValid(false);
+				page.setFrame(null);
+			}
 
 			// Freeing the Frame cont.
-			frame.setPage(null);
+			FrameMetadata.setPage(frame, null);
 			return getFreeFrame();
 		}
 
@@ -479,21 +720,48 @@ public class PageFaultHandler extends IflPageFaultHandler {
 	// Noura Al-Dakhil 1614549
 	// Last Modification Date: 17/4/2020
 	// Swap Out Method from Memory
-	public static void SwapOut(ThreadCB thread, FrameTableEntry frame) {
+	// Returns the time the thread waited for the write
+	public static long SwapOut(ThreadCB thread, FrameTableEntry frame) {
 		System.out.println("Entered Swap Out");
+		long start = HClock.get();
 		// Get Swap File to Write
+		numSwapOuts++;
+		FrameMetadata.markStale(frame);
 		frame.getPage().getTask().getSwapFile().write(frame.getPage().getID(), frame.getPage(), thread);
+
+		// Killed --> the write may still be in flight, so keep re-reading the frame
+		if (thread.getStatus() == ThreadKill)
+			FrameMetadata.markOrphan(frame);
+		FrameMetadata.sync();
+		long elapsed = HClock.get() - start;
+		swapOutTime += elapsed;
 		System.out.println("Exited Swap Out");
+		return elapsed;
 	}
 
 	// Authors: ID:
 	// Noura Al-Dakhil 1614549
 	// Last Modification Date: 17/4/2020
 	// Swap In Method into Memory
-	public static void SwapIn(ThreadCB thread, PageTableEntry page) {
+	// Returns the time the thread waited for the read
+	public static long SwapIn(ThreadCB thread, PageTableEntry page) {
 		System.out.println("Entered Swap In");
+		long start = HClock.get();
 		// Get Swap File to Read
+		numSwapIns++;
+		FrameTableEntry frame = page.getFrame();
+		FrameMetadata.setLoadOrder(frame, ++loadCount);
+		FrameMetadata.markStale(frame);
 		page.getTask().getSwapFile().read(page.getID(), page, thread);
+
+		// Killed --> the read may still be in flight, so keep re-reading the frame
+		// (OSP may already have taken it from the page of a dead task)
+		if (thread.getStatus() == ThreadKill)
+			FrameMetadata.markOrphan(frame);
+		FrameMetadata.sync();
+		long elapsed = HClock.get() - start;
+		swapInTime += elapsed;
 		System.out.println("Exited Swap In");
+		return elapsed;
 	}
 }
\ No newline at end of file
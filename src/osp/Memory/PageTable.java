@@ -14,6 +14,26 @@ import osp.IFLModules.*;
 import osp.Hardware.*;
 
 public class PageTable extends IflPageTable {
+	// Access hints a task can give for its pages (see advise())
+	public static final int AdviceNormal = 0;
+	public static final int AdviceSequential = 1;
+	public static final int AdviceRandom = 2;
+	public static final int AdviceWillNeed = 3;
+	public static final int AdviceDontNeed = 4;
+	public static final int AdviceFree = 5;
+
+	// Names of the hints, as accepted by -Dosp.memory.advice
+	static final String[] AdviceNames = { "normal", "sequential", "random", "willneed", "dontneed", "free" };
+
+	// Number of pages, over all page tables, advised DontNeed or Free; the fault
+	// handler only looks for such pages when this is non-zero
+	static int dontNeedPages = 0;
+
+	// Current hint of each page, and the number of this table's pages advised
+	// WillNeed (the fault handler only looks for them when this is non-zero)
+	byte[] advice;
+	int willNeedPages;
+
 	/**
 	 * The page table constructor. Must call
 	 * 
@@ -37,11 +57,100 @@ public class PageTable extends IflPageTable {
 		pages = new PageTableEntry[MaxNumberofPages];
 		for (int i = 0; i < MaxNumberofPages; i++)
 			pages[i] = new PageTableEntry(this, i);
+
+		// All pages start with the default hint (-Dosp.memory.advice, normal if unset)
+		advice = new byte[MaxNumberofPages];
+		int defaultAdvice = adviceNamed(System.getProperty("osp.memory.advice", "normal"));
+		if (defaultAdvice != AdviceNormal)
+			advise(0, MaxNumberofPages, defaultAdvice);
+	}
+
+	// Hint constant for the given name, AdviceNormal if unknown
+	static int adviceNamed(String name) {
+		for (int i = 0; i < AdviceNames.length; i++) {
+			if (AdviceNames[i].equalsIgnoreCase(name))
+				return i;
+		}
+		return AdviceNormal;
+	}
+
+	/**
+	 * Tells the memory system how the task will use the pages firstPage ..
+	 * firstPage + count - 1, in the manner of madvise():
+	 * 
+	 * AdviceSequential - pages are read in order; a fault reads ahead the
+	 * following pages into free frames. AdviceRandom - no read-ahead.
+	 * AdviceWillNeed - the pages are prefetched into free frames on the task's
+	 * next page fault. AdviceDontNeed - the pages are evicted before any other.
+	 * AdviceFree - the contents are no longer needed; clean resident pages are
+	 * dropped at once, dirty ones are evicted first like DontNeed (OSP does not
+	 * allow a dirty frame to be marked clean without its swap-out).
+	 * AdviceNormal - clears the hint.
+	 * 
+	 * DontNeed and Free stay in effect when the pages are used again, until the
+	 * task advises otherwise; WillNeed is cleared once the page is prefetched.
+	 * 
+	 * @return SUCCESS, or FAILURE for a bad range or hint
+	 * 
+	 * @OSPProject Memory
+	 */
+	public int advise(int firstPage, int count, int hint) {
+		if (firstPage < 0 || count < 0 || firstPage + count > pages.length)
+			return FAILURE;
+		if (hint < AdviceNormal || hint > AdviceFree)
+			return FAILURE;
+
+		// Pick up frame changes made by completed I/O
+		FrameMetadata.sync();
+
+		for (int i = firstPage; i < firstPage + count; i++) {
+			setAdvice(i, hint);
+
+			// Free --> drop clean resident pages right away
+			if (hint == AdviceFree && pages[i].isValid())
+				PageFaultHandler.dropIfClean(pages[i]);
+		}
+		return SUCCESS;
+	}
+
+	// Current hint of a page
+	int getAdvice(int pageNum) {
+		return advice[pageNum];
+	}
+
+	// Sets the hint of a page, keeping dontNeedPages, willNeedPages and the
+	// DontNeed column of its frame current
+	void setAdvice(int pageNum, int hint) {
+		if (isDontNeed(advice[pageNum]))
+			dontNeedPages--;
+		if (isDontNeed(hint))
+			dontNeedPages++;
+		if (advice[pageNum] == AdviceWillNeed)
+			willNeedPages--;
+		if (hint == AdviceWillNeed)
+			willNeedPages++;
+		advice[pageNum] = (byte) hint;
+
+		FrameTableEntry frame = pages[pageNum].getFrame();
+		if (frame != null && frame.getPage() == pages[pageNum])
+			FrameMetadata.setDontNeed(frame, isDontNeed(hint));
+	}
+
+	// Hints that put a page first in line for eviction
+	static boolean isDontNeed(int hint) {
+		return hint == AdviceDontNeed || hint == AdviceFree;
+	}
+
+	// Whether the page is advised DontNeed or Free
+	boolean isDontNeedPage(int pageNum) {
+		return isDontNeed(getAdvice(pageNum));
 	}
 
 	/**
 	 * Frees up main memory occupied by the task. Then unreserves the freed pages,
-	 * if necessary.
+	 * if necessary, and every other frame still reserved by the task (frames
+	 * reserved for a swap-in that the task's death cut short hold no page yet,
+	 * and OSP does not unreserve them).
 	 * 
 	 * @OSPProject Memory
 	 */
@@ -50,24 +159,37 @@ public class PageTable extends IflPageTable {
 	// Noura Al-Dakhil 1614549
 	// Last Modification Date: 4/4/2020
 	public void do_deallocateMemory() {
+		// Pick up frame changes made by completed I/O
+		FrameMetadata.sync();
+
+		// Forget the task's hints
+		for (int i = 0; i < advice.length; i++)
+			setAdvice(i, AdviceNormal);
+
+		// Final miss ratio curve of the task
+		MissRatioCurve.taskDone(this.getTask().getID());
+
 		// Iterates Frame Table
 		for (int i = 0; i < MMU.getFrameTableSize(); i++) {
 
 			// If Occupied by calling task --> deallocate memory
-			if (MMU.getFrame(i).getPage() != null) {
-				if (MMU.getFrame(i).getPage().getTask() == this.getTask()) {
+			if (FrameMetadata.isOccupied(i)) {
+				if (FrameMetadata.getOwner(i) == this.getTask().getID()) {
 
 					// Frees Frame
-					MMU.getFrame(i).setPage(null);
-					MMU.getFrame(i).setDirty(false);
-					MMU.getFrame(i).setReferenced(false);
+					FrameMetadata.setPage(MMU.getFrame(i), null);
+					FrameMetadata.setDirty(MMU.getFrame(i), false);
+					FrameMetadata.setReferenced(MMU.getFrame(i), false);
 
 					// If reserved by task, unreserve it.
-					if (MMU.getFrame(i).getReserved() == this.getTask())
-						MMU.getFrame(i).setUnreserved(this.getTask());
+					if (FrameMetadata.isReserved(i) && MMU.getFrame(i).getReserved() == this.getTask())
+						FrameMetadata.setUnreserved(MMU.getFrame(i), this.getTask());
 				}
 			}
 
+			// Reserved by task but not holding its page --> unreserve it too
+			if (FrameMetadata.getReservedBy(i) == this.getTask().getID())
+				FrameMetadata.setUnreserved(MMU.getFrame(i), this.getTask());
 		}
 	}
 }
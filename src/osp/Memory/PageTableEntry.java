@@ -24,16 +24,13 @@ public class PageTableEntry extends IflPageTableEntry {
 	 * 
 	 * @OSPProject Memory
 	 */
-	// Global Variable to be used by FIFO
-	long createTime;
+	// Set while the page is being swapped in by PageFaultHandler.prefetch(),
+	// which OSP does not know as a page fault
+	boolean prefetching;
 
 	// Page Tale Entry Constructor
 	public PageTableEntry(PageTable ownerPageTable, int pageNumber) {
 		super(ownerPageTable, pageNumber);
-
-		// Stores pages' creation time
-		this.createTime = System.currentTimeMillis();
-
 	}
 
 	/**
@@ -58,7 +55,7 @@ public class PageTableEntry extends IflPageTableEntry {
 		// Checks if page is valid --> if so, increment lock of corresponding frame and
 		// return success
 		if (this.isValid()) {
-			getFrame().incrementLockCount();
+			FrameMetadata.incrementLockCount(getFrame());
 			return SUCCESS;
 		}
 
@@ -74,7 +71,7 @@ public class PageTableEntry extends IflPageTableEntry {
 				// If page fault handling success --> increment lock of corresponding frame and
 				// return success
 				else {
-					getFrame().incrementLockCount();
+					FrameMetadata.incrementLockCount(getFrame());
 					return SUCCESS;
 				}
 			}
@@ -82,10 +79,21 @@ public class PageTableEntry extends IflPageTableEntry {
 			// If page has a validating thread same as the IORB thread --> increment lock of
 			// corresponding frame and return success
 			else if (getValidatingThread() == iorb.getThread()) {
-				getFrame().incrementLockCount();
+				FrameMetadata.incrementLockCount(getFrame());
 				return SUCCESS;
 			}
 
+			// Being prefetched --> OSP expects a page fault for this lock, so wait
+			// for the prefetch inside the page fault handler
+			else if (prefetching) {
+				if (PageFaultHandler.handlePageFault(iorb.getThread(), MemoryLock, this) == FAILURE)
+					return FAILURE;
+				else {
+					FrameMetadata.incrementLockCount(getFrame());
+					return SUCCESS;
+				}
+			}
+
 			// Has a validating thread not the same as IORB thread
 			else {
 				// Suspend thread
@@ -98,7 +106,7 @@ public class PageTableEntry extends IflPageTableEntry {
 
 				// If not killed --> increment lock of corresponding frame and return success
 				else {
-					getFrame().incrementLockCount();
+					FrameMetadata.incrementLockCount(getFrame());
 					return SUCCESS;
 				}
 
@@ -120,7 +128,7 @@ public class PageTableEntry extends IflPageTableEntry {
 	public void do_unlock() {
 		// Check lock count in order to not decrement below zero
 		// If permissible --> decrement lock count of corresponding frame
-		if (getFrame().getLockCount() > 0)
-			getFrame().decrementLockCount();
+		if (FrameMetadata.getLockCount(getFrame().getID()) > 0)
+			FrameMetadata.decrementLockCount(getFrame());
 	}
 }
@@ -0,0 +1,382 @@
+package osp.Memory;
+
+import java.util.*;
+
+/**
+ * The ReplacementModel class is a stand-alone model of the frame table and the
+ * page replacement policies of the PageFaultHandler, for running reference
+ * streams without the OSP simulator. Pages are identified by a long key (task
+ * ID in the high half, page number in the low half, as in MissRatioCurve), and
+ * the frame table is a set of primitive columns like FrameMetadata: the key of
+ * the page in each frame, a referenced and a dirty bitset, and a hash table
+ * from key to frame.
+ *
+ * A reference to a page not in the table is a page fault and one swap-in; the
+ * victim is chosen by the model's policy, and a dirty victim costs a swap-out
+ * first. The policies are
+ *
+ * Fifo - the page loaded first is replaced first.
+ * SecondChance - the clock of PageFaultHandler.SecondChance(): the cursor
+ * clears referenced bits and stops at the first clean, unreferenced page; if
+ * two sweeps find none, the first dirty page seen is swapped out.
+ * LRU - the least recently referenced page is replaced.
+ *
+ * The SecondChance clock works a word of 64 frames at a time, like the live
+ * PageFaultHandler.SecondChance(), but only visits words that hold a clean
+ * frame, found through a summary bitset. Dirty frames can only be chosen when
+ * no frame is clean, so their referenced bits are never read and are left
+ * alone. A model built with byFrame set runs the clock one frame at a time
+ * instead, as the fault handler's clock did before it scanned words;
+ * WorkloadDriver -check true compares the two reference for reference.
+ *
+ * The model is a copy of the policies, not the fault handler itself, and it
+ * leaves out what only OSP supplies: there are no reserved or locked frames
+ * (no I/O is ever in flight), no access hints and so no DontNeed pass, and the
+ * clock always frees exactly one frame (MMU.wantFree = 1). Its results and
+ * throughput are those of the model.
+ *
+ * @OSPProject Memory
+ */
+public class ReplacementModel {
+	// Policy names, as accepted by the constructor
+	public static final String[] Policies = { "Fifo", "SecondChance", "LRU" };
+
+	// Marks an empty frame or hash slot
+	static final long NoPage = -1L;
+
+	String policy;
+	int frames;
+
+	// Page key per frame, referenced and dirty bitsets, number of frames in use
+	// and number of those that are clean
+	long[] key;
+	long[] referenced;
+	long[] dirty;
+	int used;
+	int clean;
+
+	// SecondChance: one bit per word of the dirty bitset that has a clean frame
+	long[] cleanWords;
+
+	// SecondChance: run the clock one frame at a time
+	boolean byFrame;
+
+	// Frame the last page fault loaded its page into
+	public int lastFrame = -1;
+
+	// Open addressing hash table from page key to frame
+	long[] slotKey;
+	int[] slotFrame;
+	int slotMask;
+
+	// Fifo: next frame to replace (frames are filled, then replaced, in order)
+	// SecondChance: the cursor (MMU.Cursor)
+	int hand;
+
+	// LRU: frames in recency order, as a doubly linked list over frame numbers
+	int[] prev;
+	int[] next;
+	int head;
+	int tail;
+
+	// Statistics
+	public long references;
+	public long faults;
+	public long swapOuts;
+
+	// Model constructor w/ the policy name and the number of frames
+	public ReplacementModel(String policy, int frames) {
+		this(policy, frames, false);
+	}
+
+	// Model constructor w/ the policy name, the number of frames and whether the
+	// SecondChance clock runs one frame at a time
+	public ReplacementModel(String policy, int frames, boolean byFrame) {
+		if (!policy.equals("Fifo") && !policy.equals("SecondChance") && !policy.equals("LRU"))
+			throw new IllegalArgumentException("unknown policy " + policy);
+		if (frames <= 0)
+			throw new IllegalArgumentException("frames must be positive");
+
+		this.policy = policy;
+		this.frames = frames;
+		this.byFrame = byFrame;
+
+		int words = (frames + 63) >>> 6;
+		key = new long[frames];
+		referenced = new long[words];
+		dirty = new long[words];
+		Arrays.fill(key, NoPage);
+
+		// Every frame starts clean
+		cleanWords = new long[(words + 63) >>> 6];
+		for (int w = 0; w < words; w++)
+			FrameMetadata.set(cleanWords, w, true);
+
+		// At most a quarter full, so probe sequences stay short
+		int slots = Integer.highestOneBit(Math.max(4 * frames - 1, 1)) << 1;
+		slotKey = new long[slots];
+		slotFrame = new int[slots];
+		slotMask = slots - 1;
+		Arrays.fill(slotKey, NoPage);
+
+		if (policy.equals("LRU")) {
+			prev = new int[frames];
+			next = new int[frames];
+			head = -1;
+			tail = -1;
+		}
+	}
+
+	/*
+	 * Makes one reference to the page with the given key. Returns true on a hit,
+	 * false on a page fault.
+	 */
+	public boolean access(long pageKey, boolean write) {
+		references++;
+
+		int frame = lookup(pageKey);
+		boolean hit = frame >= 0;
+		if (!hit) {
+			faults++;
+			frame = used < frames ? used++ : evict();
+			load(frame, pageKey);
+			lastFrame = frame;
+		} else if (prev != null) {
+			moveToHead(frame);
+		}
+
+		FrameMetadata.set(referenced, frame, true);
+		if (write && !FrameMetadata.get(dirty, frame)) {
+			FrameMetadata.set(dirty, frame, true);
+			clean--;
+
+			// Last clean frame of its word
+			int w = frame >>> 6;
+			if ((~dirty[w] & validBits(w)) == 0)
+				FrameMetadata.set(cleanWords, w, false);
+		}
+		return hit;
+	}
+
+	// Frame holding the page, or -1
+	int lookup(long pageKey) {
+		for (int s = slot(pageKey);; s = (s + 1) & slotMask) {
+			if (slotKey[s] == pageKey)
+				return slotFrame[s];
+			if (slotKey[s] == NoPage)
+				return -1;
+		}
+	}
+
+	// Home slot of a key (same mixing as MissRatioCurve.hash)
+	int slot(long pageKey) {
+		return (int) MissRatioCurve.hash(pageKey) & slotMask;
+	}
+
+	// Puts the page into a free frame
+	void load(int frame, long pageKey) {
+		key[frame] = pageKey;
+		FrameMetadata.set(referenced, frame, false);
+		FrameMetadata.set(dirty, frame, false);
+		FrameMetadata.set(cleanWords, frame >>> 6, true);
+		clean++;
+
+		int s = slot(pageKey);
+		while (slotKey[s] != NoPage)
+			s = (s + 1) & slotMask;
+		slotKey[s] = pageKey;
+		slotFrame[s] = frame;
+
+		if (prev != null)
+			pushHead(frame);
+	}
+
+	/*
+	 * Frees a frame according to the policy and returns it. A dirty victim is
+	 * counted as a swap-out.
+	 */
+	int evict() {
+		int victim;
+		if (policy.equals("Fifo")) {
+			victim = hand;
+			hand = (hand + 1) % frames;
+		} else if (policy.equals("SecondChance")) {
+			victim = byFrame ? secondChanceByFrame() : secondChance();
+		} else {
+			victim = tail;
+			unlink(victim);
+		}
+
+		if (FrameMetadata.get(dirty, victim))
+			swapOuts++;
+		else
+			clean--;
+		remove(key[victim]);
+		key[victim] = NoPage;
+		return victim;
+	}
+
+	// Victim of the clock, following PageFaultHandler.SecondChance() with
+	// wantFree = 1, a word of the bitsets at a time
+	int secondChance() {
+		// All dirty --> both sweeps only clear the referenced bits (of dirty
+		// frames, which are never read) and end on the first dirty frame seen, the
+		// one at the cursor
+		if (clean == 0)
+			return hand;
+
+		// First sweep: the first clean, unreferenced frame from the cursor; the
+		// referenced bits of the frames passed over are cleared
+		int frame = firstClean(hand, frames, true);
+		if (frame >= 0) {
+			clearReferenced(hand, frame);
+		} else {
+			frame = firstClean(0, hand, true);
+			if (frame >= 0) {
+				clearReferenced(hand, frames);
+				clearReferenced(0, frame);
+			}
+		}
+
+		// Second sweep: every referenced bit is clear, so the first clean frame
+		if (frame < 0) {
+			clearReferenced(0, frames);
+			frame = firstClean(hand, frames, false);
+			if (frame < 0)
+				frame = firstClean(0, hand, false);
+		}
+
+		hand = (frame + 1) % frames;
+		return frame;
+	}
+
+	// Victim of the clock, one frame at a time, with wantFree = 1
+	int secondChanceByFrame() {
+		int firstDirty = -1;
+		for (int j = 0; j < 2; j++) {
+			for (int n = 0; n < frames; n++) {
+				int i = hand;
+				hand = (hand + 1) % frames;
+
+				if (FrameMetadata.get(referenced, i))
+					FrameMetadata.set(referenced, i, false);
+				else if (!FrameMetadata.get(dirty, i))
+					return i;
+
+				if (firstDirty < 0 && FrameMetadata.get(dirty, i))
+					firstDirty = i;
+			}
+		}
+		return firstDirty;
+	}
+
+	// Mask of the bits of word w that correspond to frames
+	long validBits(int w) {
+		int remaining = frames - (w << 6);
+		return remaining >= 64 ? -1L : (1L << remaining) - 1;
+	}
+
+	// First word in [w, last] that holds a clean frame, or -1
+	int nextCleanWord(int w, int last) {
+		for (int s = w >>> 6; s <= last >>> 6; s++) {
+			long bits = cleanWords[s];
+			if (s == w >>> 6)
+				bits &= -1L << w;
+			if (bits != 0) {
+				int found = (s << 6) + Long.numberOfTrailingZeros(bits);
+				return found <= last ? found : -1;
+			}
+		}
+		return -1;
+	}
+
+	// First clean (and unreferenced, if asked) frame in [from, to), or -1
+	int firstClean(int from, int to, boolean unreferenced) {
+		if (from >= to)
+			return -1;
+		int last = (to - 1) >>> 6;
+		for (int w = nextCleanWord(from >>> 6, last); w >= 0; w = nextCleanWord(w + 1, last)) {
+			long bits = ~dirty[w] & FrameMetadata.rangeBits(w, from, to);
+			if (unreferenced)
+				bits &= ~referenced[w];
+			if (bits != 0)
+				return (w << 6) + Long.numberOfTrailingZeros(bits);
+		}
+		return -1;
+	}
+
+	// Clears the referenced bits of the frames in [from, to), skipping the words
+	// with no clean frame
+	void clearReferenced(int from, int to) {
+		if (from >= to)
+			return;
+		int last = (to - 1) >>> 6;
+		for (int w = nextCleanWord(from >>> 6, last); w >= 0; w = nextCleanWord(w + 1, last))
+			referenced[w] &= ~FrameMetadata.rangeBits(w, from, to);
+	}
+
+	// Deletes a key from the hash table (backward shift, no tombstones)
+	void remove(long pageKey) {
+		int s = slot(pageKey);
+		while (slotKey[s] != pageKey)
+			s = (s + 1) & slotMask;
+
+		int hole = s;
+		for (s = (s + 1) & slotMask; slotKey[s] != NoPage; s = (s + 1) & slotMask) {
+			// An entry can fill the hole only if its home slot is not between the
+			// hole and its current slot
+			int home = slot(slotKey[s]);
+			if (((s - home) & slotMask) >= ((s - hole) & slotMask)) {
+				slotKey[hole] = slotKey[s];
+				slotFrame[hole] = slotFrame[s];
+				hole = s;
+			}
+		}
+		slotKey[hole] = NoPage;
+	}
+
+	// LRU list helpers
+
+	void pushHead(int frame) {
+		prev[frame] = -1;
+		next[frame] = head;
+		if (head >= 0)
+			prev[head] = frame;
+		head = frame;
+		if (tail < 0)
+			tail = frame;
+	}
+
+	void unlink(int frame) {
+		if (prev[frame] >= 0)
+			next[prev[frame]] = next[frame];
+		else
+			head = next[frame];
+		if (next[frame] >= 0)
+			prev[next[frame]] = prev[frame];
+		else
+			tail = prev[frame];
+	}
+
+	void moveToHead(int frame) {
+		if (frame != head) {
+			unlink(frame);
+			pushHead(frame);
+		}
+	}
+
+	/*
+	 * Returns the share of references that were page faults.
+	 */
+	public double faultRatio() {
+		return references == 0 ? 0.0 : (double) faults / references;
+	}
+
+	// Prints the counters on one line, in the form of the Memory Statistics line
+	// of the page fault handler
+	public void printStatistics() {
+		System.out.println("Memory Statistics: policy=" + policy + " frames=" + frames + " refs=" + references
+				+ " faults=" + faults + " swapIns=" + faults + " swapOuts=" + swapOuts + " faultRatio="
+				+ String.format("%.4f", faultRatio()));
+	}
+}
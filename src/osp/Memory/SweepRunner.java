@@ -0,0 +1,420 @@
+package osp.Memory;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * The SweepRunner class runs the simulator over a grid of [Memory] settings
+ * and collects the results in one report. Each point of the grid gets its own
+ * directory with a params.osp written from a template (Misc/params.osp by
+ * default), and its own java process running osp.OSP -noGUI, since OSP keeps
+ * its state in static fields and cannot run two simulations in one JVM. Up to
+ * one process per core runs at a time.
+ *
+ * From each run the report takes the Memory Statistics line printed by the
+ * PageFaultHandler (references, faults, swap I/O, ...), the wall time and the
+ * number of errors and warnings in OSP.log. It is written as CSV, or as JSON
+ * if the file name ends in .json.
+ *
+ * Usage: java -cp .:OSP.jar osp.Memory.SweepRunner [-option value]...
+ * (see Usage below); -Dname=value arguments are passed on to every run.
+ *
+ * @OSPProject Memory
+ */
+public class SweepRunner {
+	static final String Usage = "Usage: java -cp .:OSP.jar osp.Memory.SweepRunner [options] [-Dname=value]...\n"
+			+ "  -template f   params file to start from (Misc/params.osp)\n"
+			+ "  -frames l     FramesOfPhysicalMemory values (10,30,60)\n"
+			+ "  -pageBits l   PageAddressBits values (6)\n"
+			+ "  -writes l     MemoryWritePercentage values; reads are the rest (50)\n"
+			+ "  -local l      UseLocalAccessPattern values (0)\n"
+			+ "  -policy l     userOption values: s, Fifo, Adaptive (s,Fifo)\n"
+			+ "  -length n     SimulationLength (from the template)\n"
+			+ "  -repeat n     runs of each configuration (1)\n"
+			+ "  -jobs n       runs at a time (number of cores)\n"
+			+ "  -timeout n    seconds before a run is stopped (600)\n"
+			+ "  -dir d        directory for the runs (sweep)\n"
+			+ "  -out f        report, .csv or .json (sweep.csv)\n"
+			+ "Lists are comma separated.";
+
+	// Options with their defaults
+	String template = "Misc/params.osp";
+	String[] frames = { "10", "30", "60" };
+	String[] pageBits = { "6" };
+	String[] writes = { "50" };
+	String[] local = { "0" };
+	String[] policies = { "s", "Fifo" };
+	String length = null;
+	int repeat = 1;
+	int jobs = Runtime.getRuntime().availableProcessors();
+	int timeout = 600;
+	String dir = "sweep";
+	String out = "sweep.csv";
+	ArrayList<String> properties = new ArrayList<String>();
+
+	/*
+	 * One point of the grid, and what its run produced.
+	 */
+	static class Run {
+		int id;
+		String frames;
+		String pageBits;
+		String writes;
+		String local;
+		String policy;
+		int repeat;
+
+		// Report columns, in order
+		LinkedHashMap<String, String> results = new LinkedHashMap<String, String>();
+	}
+
+	public static void main(String[] args) {
+		if (args.length == 1 && args[0].equals("-help")) {
+			System.out.println(Usage);
+			return;
+		}
+
+		SweepRunner runner = new SweepRunner();
+		try {
+			runner.parse(args);
+			runner.sweep();
+		} catch (IllegalArgumentException e) {
+			System.out.println(e.getMessage());
+			System.out.println(Usage);
+			System.exit(1);
+		} catch (Exception e) {
+			System.out.println("Sweep failed: " + e);
+			System.exit(1);
+		}
+	}
+
+	/*
+	 * Reads -option value pairs into the fields; -Dname=value arguments are kept
+	 * for the runs.
+	 */
+	void parse(String[] args) {
+		for (int i = 0; i < args.length; i++) {
+			String name = args[i];
+			if (name.startsWith("-D")) {
+				properties.add(name);
+				continue;
+			}
+			if (i + 1 >= args.length)
+				throw new IllegalArgumentException("Missing value for " + name);
+
+			String value = args[++i];
+			try {
+				if (name.equals("-template"))
+					template = value;
+				else if (name.equals("-frames"))
+					frames = list(value);
+				else if (name.equals("-pageBits"))
+					pageBits = list(value);
+				else if (name.equals("-writes"))
+					writes = list(value);
+				else if (name.equals("-local"))
+					local = list(value);
+				else if (name.equals("-policy"))
+					policies = list(value);
+				else if (name.equals("-length"))
+					length = String.valueOf(Long.parseLong(value));
+				else if (name.equals("-repeat"))
+					repeat = Integer.parseInt(value);
+				else if (name.equals("-jobs"))
+					jobs = Integer.parseInt(value);
+				else if (name.equals("-timeout"))
+					timeout = Integer.parseInt(value);
+				else if (name.equals("-dir"))
+					dir = value;
+				else if (name.equals("-out"))
+					out = value;
+				else
+					throw new IllegalArgumentException("Unknown option " + name);
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Bad value for " + name + ": " + value);
+			}
+		}
+
+		if (repeat <= 0 || jobs <= 0 || timeout <= 0)
+			throw new IllegalArgumentException("Counts must be positive");
+		checkNumbers("-frames", frames);
+		checkNumbers("-pageBits", pageBits);
+		checkNumbers("-writes", writes);
+		checkNumbers("-local", local);
+		for (String value : writes) {
+			int percentage = Integer.parseInt(value);
+			if (percentage < 0 || percentage > 100)
+				throw new IllegalArgumentException("Write percentages must be between 0 and 100");
+		}
+		if (!new File(template).isFile())
+			throw new IllegalArgumentException("No template " + template);
+	}
+
+	// Splits a comma separated list
+	static String[] list(String value) {
+		String[] items = value.split(",");
+		for (int i = 0; i < items.length; i++)
+			items[i] = items[i].trim();
+		return items;
+	}
+
+	// Checks that every value of a list option is a non-negative integer
+	static void checkNumbers(String name, String[] values) {
+		for (String value : values) {
+			if (!value.matches("\\d+"))
+				throw new IllegalArgumentException("Bad value for " + name + ": " + value);
+		}
+	}
+
+	/*
+	 * Builds the grid, runs it on a pool of jobs processes and writes the report.
+	 */
+	void sweep() throws Exception {
+		ArrayList<Run> runs = new ArrayList<Run>();
+		for (String f : frames)
+			for (String b : pageBits)
+				for (String w : writes)
+					for (String l : local)
+						for (String p : policies)
+							for (int r = 1; r <= repeat; r++) {
+								Run run = new Run();
+								run.id = runs.size() + 1;
+								run.frames = f;
+								run.pageBits = b;
+								run.writes = w;
+								run.local = l;
+								run.policy = p;
+								run.repeat = r;
+								runs.add(run);
+							}
+
+		System.out.println("Sweep: " + runs.size() + " runs, " + jobs + " at a time, in " + dir);
+		List<String> lines = readLines(new File(template));
+
+		ExecutorService pool = Executors.newFixedThreadPool(jobs);
+		ArrayList<Future<Run>> done = new ArrayList<Future<Run>>();
+		for (final Run run : runs) {
+			final List<String> params = params(lines, run);
+			done.add(pool.submit(new Callable<Run>() {
+				public Run call() throws Exception {
+					execute(run, params);
+					return run;
+				}
+			}));
+		}
+		pool.shutdown();
+
+		for (Future<Run> future : done)
+			future.get();
+
+		if (out.endsWith(".json"))
+			writeJson(runs);
+		else
+			writeCsv(runs);
+		System.out.println("Sweep: report written to " + out);
+	}
+
+	// The template with the run's [Memory] settings (and SimulationLength)
+	List<String> params(List<String> lines, Run run) {
+		HashMap<String, String> settings = new HashMap<String, String>();
+		settings.put("FramesOfPhysicalMemory", run.frames);
+		settings.put("PageAddressBits", run.pageBits);
+		settings.put("MemoryWritePercentage", run.writes);
+		settings.put("MemoryReadPercentage", String.valueOf(100 - Integer.parseInt(run.writes)));
+		settings.put("UseLocalAccessPattern", run.local);
+		if (length != null)
+			settings.put("SimulationLength", length);
+
+		ArrayList<String> params = new ArrayList<String>();
+		for (String line : lines) {
+			String[] fields = line.trim().split("\\s+");
+			if (fields.length == 2 && settings.containsKey(fields[0]))
+				line = fields[0] + " " + settings.get(fields[0]);
+			params.add(line);
+		}
+		return params;
+	}
+
+	/*
+	 * Runs one simulation in its own directory and process and fills in its
+	 * results.
+	 */
+	void execute(Run run, List<String> params) throws IOException, InterruptedException {
+		String name = "run" + run.id + "-f" + run.frames + "-b" + run.pageBits + "-w" + run.writes + "-l"
+				+ run.local + "-" + run.policy + "-r" + run.repeat;
+		File runDir = new File(dir, name);
+		runDir.mkdirs();
+		writeLines(new File(runDir, "params.osp"), params);
+
+		ArrayList<String> command = new ArrayList<String>();
+		command.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+		command.add("-Djava.awt.headless=true");
+		command.addAll(properties);
+		command.add("-cp");
+		command.add(classPath());
+		command.add("osp.OSP");
+		command.add("-noGUI");
+		command.add("-paramFile");
+		command.add("params.osp");
+		command.add("-userOption");
+		command.add(run.policy);
+
+		File output = new File(runDir, "out.txt");
+		ProcessBuilder builder = new ProcessBuilder(command);
+		builder.directory(runDir);
+		builder.redirectErrorStream(true);
+		builder.redirectOutput(output);
+
+		long start = System.nanoTime();
+		Process process = builder.start();
+		boolean finished = process.waitFor(timeout, TimeUnit.SECONDS);
+		if (!finished)
+			process.destroyForcibly().waitFor();
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		collect(run, runDir, output, finished, seconds);
+		synchronized (this) {
+			System.out.println("Sweep: run " + run.id + " " + name + " " + run.results.get("status") + " faults="
+					+ run.results.get("faults") + " in " + String.format(Locale.ROOT, "%.1f", seconds) + "s");
+		}
+	}
+
+	// Absolute class path of this JVM, so runs can start in their own directory
+	static String classPath() {
+		StringBuffer path = new StringBuffer();
+		for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+			if (path.length() > 0)
+				path.append(File.pathSeparator);
+			path.append(new File(entry).getAbsolutePath());
+		}
+		return path.toString();
+	}
+
+	// Fills in the report columns of a finished run
+	void collect(Run run, File runDir, File output, boolean finished, double seconds) throws IOException {
+		LinkedHashMap<String, String> results = run.results;
+		results.put("run", String.valueOf(run.id));
+		results.put("framesOfPhysicalMemory", run.frames);
+		results.put("pageAddressBits", run.pageBits);
+		results.put("memoryWritePercentage", run.writes);
+		results.put("useLocalAccessPattern", run.local);
+		results.put("userOption", run.policy);
+		results.put("repeat", String.valueOf(run.repeat));
+
+		boolean ended = false;
+		String statistics = null;
+		for (String line : readLines(output)) {
+			if (line.contains("Simulation ended successfully"))
+				ended = true;
+			if (line.startsWith("Memory Statistics:"))
+				statistics = line;
+		}
+
+		int logErrors = 0;
+		File log = new File(runDir, "OSP.log");
+		if (log.isFile()) {
+			for (String line : readLines(log)) {
+				if (line.contains("<<Error!>>") || line.contains("<<Warning!>>"))
+					logErrors++;
+			}
+		}
+
+		results.put("status", !finished ? "timeout" : ended && logErrors == 0 ? "ok" : "failed");
+		results.put("logErrors", String.valueOf(logErrors));
+		results.put("wallSeconds", String.format(Locale.ROOT, "%.2f", seconds));
+
+		// key=value pairs of the Memory Statistics line
+		if (statistics != null) {
+			for (String pair : statistics.substring("Memory Statistics:".length()).trim().split("\\s+")) {
+				int equals = pair.indexOf('=');
+				if (equals > 0 && !pair.startsWith("frames="))
+					results.put(pair.substring(0, equals), pair.substring(equals + 1));
+			}
+		}
+
+		// Throughput from the references counted by MMU.do_refer()
+		String references = results.get("references");
+		results.put("referencesPerSecond",
+				references == null ? null : String.valueOf(Math.round(Long.parseLong(references) / seconds)));
+	}
+
+	// Report columns: every column of every run, in first-seen order
+	static ArrayList<String> columns(List<Run> runs) {
+		LinkedHashSet<String> columns = new LinkedHashSet<String>();
+		for (Run run : runs)
+			columns.addAll(run.results.keySet());
+		return new ArrayList<String>(columns);
+	}
+
+	void writeCsv(List<Run> runs) throws IOException {
+		ArrayList<String> columns = columns(runs);
+		ArrayList<String> lines = new ArrayList<String>();
+		lines.add(String.join(",", columns));
+		for (Run run : runs) {
+			StringBuffer line = new StringBuffer();
+			for (int i = 0; i < columns.size(); i++) {
+				if (i > 0)
+					line.append(',');
+				String value = run.results.get(columns.get(i));
+				if (value != null)
+					line.append(value);
+			}
+			lines.add(line.toString());
+		}
+		writeLines(new File(out), lines);
+	}
+
+	void writeJson(List<Run> runs) throws IOException {
+		ArrayList<String> columns = columns(runs);
+		ArrayList<String> lines = new ArrayList<String>();
+		lines.add("[");
+		for (int r = 0; r < runs.size(); r++) {
+			StringBuffer line = new StringBuffer("  {");
+			boolean first = true;
+			for (String column : columns) {
+				String value = runs.get(r).results.get(column);
+				if (value == null)
+					continue;
+				if (!first)
+					line.append(", ");
+				first = false;
+				line.append('"').append(column).append("\": ");
+				// Numbers as numbers, everything else as a string
+				if (value.matches("-?\\d+(\\.\\d+)?"))
+					line.append(value);
+				else
+					line.append('"').append(value.replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+			}
+			line.append(r + 1 < runs.size() ? "}," : "}");
+			lines.add(line.toString());
+		}
+		lines.add("]");
+		writeLines(new File(out), lines);
+	}
+
+	// File helpers
+
+	static List<String> readLines(File file) throws IOException {
+		ArrayList<String> lines = new ArrayList<String>();
+		BufferedReader reader = new BufferedReader(new FileReader(file));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null)
+				lines.add(line);
+		} finally {
+			reader.close();
+		}
+		return lines;
+	}
+
+	static void writeLines(File file, List<String> lines) throws IOException {
+		PrintWriter writer = new PrintWriter(new FileWriter(file));
+		try {
+			for (String line : lines)
+				writer.println(line);
+		} finally {
+			writer.close();
+		}
+	}
+}
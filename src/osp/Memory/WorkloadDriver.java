@@ -0,0 +1,378 @@
+package osp.Memory;
+
+import java.util.*;
+
+/**
+ * The WorkloadDriver class runs synthetic reference streams against the
+ * ReplacementModel without the OSP simulator, so that the replacement policies
+ * and the miss ratio curve estimator can be load-tested with far more frames
+ * and references than the simulator's parameter files allow.
+ *
+ * The stand-ins are deliberately thin: a task is a page number space (its
+ * pages are keyed like MissRatioCurve keys), a thread is a reference stream
+ * belonging to one task, the scheduler runs the threads round-robin for a
+ * quantum of references each, and the swap file is the swap-in and swap-out
+ * counters of the model. Every reference is either a read or a write.
+ *
+ * Reference patterns:
+ * zipf - pages drawn from a Zipf distribution with exponent theta.
+ * loop - a cyclic scan over loop pages.
+ * phase - uniform references to a working set of workingSet pages that moves
+ * to a random place in the task every phase references.
+ * mixed - the threads use zipf, loop and phase in turn.
+ *
+ * With -check true, the driver instead runs the SecondChance model against
+ * its one-frame-at-a-time version on the same stream, and fails on the first
+ * reference where the two load a page into different frames. Neither is the
+ * live PageFaultHandler, which needs the simulator (see ReplacementModel for
+ * what the model leaves out).
+ *
+ * Usage: java -cp .:OSP.jar osp.Memory.WorkloadDriver [-option value]...
+ * (see Usage below for the options and their defaults).
+ *
+ * @OSPProject Memory
+ */
+public class WorkloadDriver {
+	static final String Usage = "Usage: java -cp .:OSP.jar osp.Memory.WorkloadDriver [options]\n"
+			+ "  -frames n      frames of physical memory (1024)\n"
+			+ "  -policy p      Fifo, SecondChance, LRU or all (all)\n"
+			+ "  -pattern p     zipf, loop, phase or mixed (zipf)\n"
+			+ "  -threads n     reference streams (1)\n"
+			+ "  -tasks n       tasks the threads are spread over (1)\n"
+			+ "  -pages n       pages per task (4 * frames)\n"
+			+ "  -refs n        references in total (10000000)\n"
+			+ "  -writes f      share of references that are writes (0.25)\n"
+			+ "  -theta f       zipf exponent (0.99)\n"
+			+ "  -loop n        pages per scan of loop (frames + frames / 4)\n"
+			+ "  -workingSet n  pages per phase of phase (frames / 2)\n"
+			+ "  -phase n       references per phase of phase (1000000)\n"
+			+ "  -quantum n     references per thread before switching (100)\n"
+			+ "  -seed n        random seed (1)\n"
+			+ "  -mrc true      also estimate the miss ratio curves (false)\n"
+			+ "  -check true    check the SecondChance word scan against the\n"
+			+ "                 frame-by-frame clock instead (false)";
+
+	// Options with their defaults (-1 = derived from frames)
+	int frames = 1024;
+	String policy = "all";
+	String pattern = "zipf";
+	int threads = 1;
+	int tasks = 1;
+	int pages = -1;
+	long refs = 10000000L;
+	double writes = 0.25;
+	double theta = 0.99;
+	int loop = -1;
+	int workingSet = -1;
+	long phase = 1000000L;
+	int quantum = 100;
+	long seed = 1;
+	boolean mrc = false;
+	boolean check = false;
+
+	// Zipf cumulative distribution over the pages of a task, shared by the threads
+	double[] zipfCdf;
+
+	/*
+	 * A small xorshift generator; java.util.Random would dominate the run time.
+	 */
+	static class Generator {
+		long state;
+
+		Generator(long seed) {
+			state = (seed + 1) * 0x9E3779B97F4A7C15L | 1;
+		}
+
+		long nextLong() {
+			state ^= state << 13;
+			state ^= state >>> 7;
+			state ^= state << 17;
+			return state;
+		}
+
+		// Uniform in [0, 1)
+		double nextDouble() {
+			return (nextLong() >>> 11) * 0x1.0p-53;
+		}
+
+		// Uniform in [0, bound)
+		int nextInt(int bound) {
+			return (int) ((nextLong() >>> 33) * bound >>> 31);
+		}
+	}
+
+	/*
+	 * The reference stream of one thread: returns the next page number of its task.
+	 */
+	abstract static class Stream {
+		int taskID;
+
+		abstract int next(Generator random);
+	}
+
+	static class ZipfStream extends Stream {
+		double[] cdf;
+
+		ZipfStream(double[] cdf) {
+			this.cdf = cdf;
+		}
+
+		int next(Generator random) {
+			int i = Arrays.binarySearch(cdf, random.nextDouble());
+			return i >= 0 ? i : Math.min(-i - 1, cdf.length - 1);
+		}
+	}
+
+	static class LoopStream extends Stream {
+		int length;
+		int cursor;
+
+		LoopStream(int length) {
+			this.length = length;
+		}
+
+		int next(Generator random) {
+			int page = cursor;
+			cursor = (cursor + 1) % length;
+			return page;
+		}
+	}
+
+	static class PhaseStream extends Stream {
+		int pages;
+		int workingSet;
+		long phase;
+		long left;
+		int base;
+
+		PhaseStream(int pages, int workingSet, long phase) {
+			this.pages = pages;
+			this.workingSet = workingSet;
+			this.phase = phase;
+		}
+
+		int next(Generator random) {
+			// Move the working set at the start of each phase
+			if (left == 0) {
+				base = random.nextInt(pages - workingSet + 1);
+				left = phase;
+			}
+			left--;
+			return base + random.nextInt(workingSet);
+		}
+	}
+
+	public static void main(String[] args) {
+		if (args.length == 1 && args[0].equals("-help")) {
+			System.out.println(Usage);
+			return;
+		}
+
+		WorkloadDriver driver = new WorkloadDriver();
+		try {
+			driver.parse(args);
+		} catch (IllegalArgumentException e) {
+			System.out.println(e.getMessage());
+			System.out.println(Usage);
+			System.exit(1);
+		}
+		if (driver.check) {
+			if (!driver.check())
+				System.exit(1);
+		} else
+			driver.run();
+	}
+
+	/*
+	 * Reads -option value pairs into the fields and fills in the derived defaults.
+	 */
+	void parse(String[] args) {
+		for (int i = 0; i < args.length; i += 2) {
+			if (i + 1 >= args.length)
+				throw new IllegalArgumentException("Missing value for " + args[i]);
+
+			String name = args[i];
+			String value = args[i + 1];
+			try {
+				if (name.equals("-frames"))
+					frames = Integer.parseInt(value);
+				else if (name.equals("-policy"))
+					policy = value;
+				else if (name.equals("-pattern"))
+					pattern = value;
+				else if (name.equals("-threads"))
+					threads = Integer.parseInt(value);
+				else if (name.equals("-tasks"))
+					tasks = Integer.parseInt(value);
+				else if (name.equals("-pages"))
+					pages = Integer.parseInt(value);
+				else if (name.equals("-refs"))
+					refs = Long.parseLong(value);
+				else if (name.equals("-writes"))
+					writes = Double.parseDouble(value);
+				else if (name.equals("-theta"))
+					theta = Double.parseDouble(value);
+				else if (name.equals("-loop"))
+					loop = Integer.parseInt(value);
+				else if (name.equals("-workingSet"))
+					workingSet = Integer.parseInt(value);
+				else if (name.equals("-phase"))
+					phase = Long.parseLong(value);
+				else if (name.equals("-quantum"))
+					quantum = Integer.parseInt(value);
+				else if (name.equals("-seed"))
+					seed = Long.parseLong(value);
+				else if (name.equals("-mrc"))
+					mrc = Boolean.parseBoolean(value);
+				else if (name.equals("-check"))
+					check = Boolean.parseBoolean(value);
+				else
+					throw new IllegalArgumentException("Unknown option " + name);
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Bad value for " + name + ": " + value);
+			}
+		}
+
+		// Derived defaults
+		if (pages < 0)
+			pages = 4 * frames;
+		if (loop < 0)
+			loop = frames + frames / 4;
+		if (workingSet < 0)
+			workingSet = Math.max(1, frames / 2);
+
+		if (frames <= 0 || threads <= 0 || tasks <= 0 || pages <= 0 || quantum <= 0 || phase <= 0)
+			throw new IllegalArgumentException("Counts must be positive");
+		if (loop <= 0 || loop > pages || workingSet <= 0 || workingSet > pages)
+			throw new IllegalArgumentException("loop and workingSet must be between 1 and pages");
+		if (!policy.equals("all") && !Arrays.asList(ReplacementModel.Policies).contains(policy))
+			throw new IllegalArgumentException("Unknown policy " + policy);
+		if (!Arrays.asList("zipf", "loop", "phase", "mixed").contains(pattern))
+			throw new IllegalArgumentException("Unknown pattern " + pattern);
+	}
+
+	/*
+	 * Runs the workload once per selected policy. Every policy sees the same
+	 * reference stream (same seed).
+	 */
+	void run() {
+		System.out.println("Workload: pattern=" + pattern + " threads=" + threads + " tasks=" + tasks + " pages="
+				+ pages + " refs=" + refs + " writes=" + writes + " frames=" + frames);
+
+		if (pattern.equals("zipf") || pattern.equals("mixed"))
+			zipfCdf = zipf(pages, theta);
+
+		String[] policies = policy.equals("all") ? ReplacementModel.Policies : new String[] { policy };
+		for (int p = 0; p < policies.length; p++) {
+			// The curves only depend on the stream, so estimate them once
+			boolean estimate = mrc && p == 0;
+			if (estimate)
+				MissRatioCurve.reset(frames, 0);
+
+			ReplacementModel model = new ReplacementModel(policies[p], frames);
+			long start = System.nanoTime();
+			drive(model, null, estimate);
+			double seconds = (System.nanoTime() - start) / 1e9;
+
+			model.printStatistics();
+			System.out.println("Throughput: policy=" + policies[p] + " refsPerSecond="
+					+ Math.round(refs / Math.max(seconds, 1e-9)));
+
+			if (estimate) {
+				System.out.println("Miss Ratio Curves (frames in use = " + frames + ", estimated miss ratio = "
+						+ String.format("%.3f", MissRatioCurve.all.missRatio(frames)) + ")");
+				MissRatioCurve.printCurves();
+			}
+		}
+	}
+
+	/*
+	 * Runs the word-at-a-time SecondChance model and the frame-by-frame one on the
+	 * same stream. Returns true if they made the same choice on every reference.
+	 */
+	boolean check() {
+		System.out.println("Check: pattern=" + pattern + " threads=" + threads + " tasks=" + tasks + " pages="
+				+ pages + " refs=" + refs + " writes=" + writes + " frames=" + frames);
+
+		if (pattern.equals("zipf") || pattern.equals("mixed"))
+			zipfCdf = zipf(pages, theta);
+
+		ReplacementModel model = new ReplacementModel("SecondChance", frames);
+		ReplacementModel reference = new ReplacementModel("SecondChance", frames, true);
+		long mismatch = drive(model, reference, false);
+		if (mismatch >= 0) {
+			System.out.println("Check FAILED at reference " + mismatch + ": word scan loaded frame "
+					+ model.lastFrame + ", frame-by-frame clock loaded frame " + reference.lastFrame);
+			return false;
+		}
+
+		model.printStatistics();
+		System.out.println("Check passed: SecondChance word scan matches the frame-by-frame clock on all " + refs
+				+ " references");
+		return true;
+	}
+
+	/*
+	 * Feeds refs references from the threads' streams into the model, and into
+	 * the reference model if there is one. Returns the index of the first
+	 * reference where the two disagree (hit or miss, or frame loaded), or -1.
+	 */
+	long drive(ReplacementModel model, ReplacementModel reference, boolean estimate) {
+		Generator random = new Generator(seed);
+		Stream[] streams = streams();
+
+		long done = 0;
+		while (done < refs) {
+			// Round-robin over the threads, one quantum each
+			for (int t = 0; t < threads && done < refs; t++) {
+				Stream stream = streams[t];
+				long end = Math.min(done + quantum, refs);
+				for (; done < end; done++) {
+					int pageNum = stream.next(random);
+					long key = MissRatioCurve.key(stream.taskID, pageNum);
+					boolean write = random.nextDouble() < writes;
+					boolean hit = model.access(key, write);
+					if (estimate)
+						MissRatioCurve.record(stream.taskID, pageNum);
+
+					if (reference != null
+							&& (reference.access(key, write) != hit || reference.lastFrame != model.lastFrame))
+						return done;
+				}
+			}
+		}
+		return -1;
+	}
+
+	// One stream per thread; thread t belongs to task t % tasks
+	Stream[] streams() {
+		Stream[] streams = new Stream[threads];
+		for (int t = 0; t < threads; t++) {
+			String kind = pattern;
+			if (kind.equals("mixed"))
+				kind = new String[] { "zipf", "loop", "phase" }[t % 3];
+
+			if (kind.equals("zipf"))
+				streams[t] = new ZipfStream(zipfCdf);
+			else if (kind.equals("loop"))
+				streams[t] = new LoopStream(loop);
+			else
+				streams[t] = new PhaseStream(pages, workingSet, phase);
+			streams[t].taskID = t % tasks;
+		}
+		return streams;
+	}
+
+	// Cumulative distribution of Zipf(theta) over n ranks
+	static double[] zipf(int n, double theta) {
+		double[] cdf = new double[n];
+		double sum = 0;
+		for (int i = 0; i < n; i++) {
+			sum += 1.0 / Math.pow(i + 1, theta);
+			cdf[i] = sum;
+		}
+		for (int i = 0; i < n; i++)
+			cdf[i] /= sum;
+		return cdf;
+	}
+}